@@ -0,0 +1,72 @@
+package com.vaadin.framework8.migrate;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures building the compatibility class index by scanning the jars
+ * ({@code findV7Classes}), and loading it from the cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClassIndexBenchmark {
+
+    private static final String VERSION = "8.99.0";
+
+    private File dir;
+    private String server;
+    private String shared;
+    private String client;
+    private ClassIndexCache cache;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("classindexbenchmark").toFile();
+        SyntheticInputs.createCompatibilityJars(dir, VERSION);
+        server = jar("vaadin-compatibility-server");
+        shared = jar("vaadin-compatibility-shared");
+        client = jar("vaadin-compatibility-client");
+        cache = new ClassIndexCache(new File(dir, "cache").toPath(),
+                System.out);
+        cache.get(VERSION, server, shared, client);
+    }
+
+    private String jar(String moduleName) {
+        return new File(dir, "com/vaadin/" + moduleName + "/" + VERSION + "/"
+                + moduleName + "-" + VERSION + ".jar").getPath();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Benchmark
+    public ClassIndex findV7Classes() throws IOException {
+        return ClassIndex.fromJars(server, shared, client);
+    }
+
+    @Benchmark
+    public ClassIndex loadCachedIndex() throws IOException {
+        return cache.get(VERSION, server, shared, client);
+    }
+}
@@ -0,0 +1,79 @@
+package com.vaadin.framework8.migrate;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a full {@link MigrationTool#migrate()} of a synthetic project,
+ * resolving the jars offline from a local directory. The project is
+ * recreated before every iteration, as the migration modifies it.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MigrateBenchmark {
+
+    private static final String VERSION = "8.99.0";
+
+    @Param({ "1000" })
+    public int files;
+
+    @Param({ "1", "4" })
+    public int threads;
+
+    private File dir;
+    private File project;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("migratebenchmark").toFile();
+        SyntheticInputs.createCompatibilityJars(new File(dir, "jars"),
+                VERSION);
+    }
+
+    @Setup(Level.Iteration)
+    public void createProject() throws IOException {
+        project = new File(dir, "project");
+        FileUtils.deleteDirectory(project);
+        SyntheticInputs.createProject(project, files);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Benchmark
+    public void migrate() throws Exception {
+        VadinJarFinder jarFinder = new VadinJarFinder();
+        jarFinder.setJarDirectory(new File(dir, "jars"));
+        jarFinder.setOffline(true);
+        MigrationTool migrationTool = new MigrationTool(VERSION, project,
+                StandardCharsets.UTF_8);
+        migrationTool.setJarFinder(jarFinder);
+        migrationTool.setCacheDirectory(new File(dir, "cache"));
+        migrationTool.setThreads(threads);
+        migrationTool.migrate();
+    }
+}
@@ -0,0 +1,92 @@
+package com.vaadin.framework8.migrate;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures rewriting a single Java or declarative file.
+ * {@link #performReplacement()} is the per-class replacement loop the tool
+ * used before {@link JavaRewriter}, kept as the baseline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RewriteBenchmark {
+
+    @Param({ "100", "1000" })
+    public int lines;
+
+    private Map<String, String> renames;
+    private JavaRewriter javaRewriter;
+    private DeclarativeRewriter declarativeRewriter;
+    private String javaFile;
+    private String designFile;
+
+    @Setup
+    public void setup() {
+        renames = new HashMap<>();
+        for (List<String> classes : Arrays.asList(
+                SyntheticInputs.serverClasses(),
+                SyntheticInputs.sharedClasses(),
+                SyntheticInputs.clientClasses())) {
+            for (String v7Class : classes) {
+                renames.putIfAbsent(
+                        v7Class.replace("com.vaadin.v7.", "com.vaadin."),
+                        v7Class);
+            }
+        }
+        javaRewriter = new JavaRewriter(renames);
+        declarativeRewriter = new DeclarativeRewriter(
+                SyntheticInputs.serverClasses().subList(0,
+                        SyntheticInputs.UI_CLASSES),
+                "8.5.2");
+        javaFile = SyntheticInputs.javaFile(lines, 42);
+        designFile = SyntheticInputs.designFile(lines, 42);
+    }
+
+    @Benchmark
+    public String modifyJava() {
+        return javaRewriter.rewrite(javaFile);
+    }
+
+    @Benchmark
+    public String modifyDeclarative() {
+        return declarativeRewriter.rewrite(designFile);
+    }
+
+    @Benchmark
+    public String performReplacement() {
+        String result = javaFile;
+        for (Map.Entry<String, String> rename : renames.entrySet()) {
+            String from = rename.getKey();
+            String to = rename.getValue();
+            result = result.replace("import " + from + ";",
+                    "import " + to + ";");
+            result = result.replace("extends " + from + " ",
+                    "extends " + to + " ");
+            result = result.replace("implements " + from + " ",
+                    "implements " + to + " ");
+            result = result.replace("throws " + from + " ",
+                    "throws " + to + " ");
+        }
+        return result;
+    }
+}
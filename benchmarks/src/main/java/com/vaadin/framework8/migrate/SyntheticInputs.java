@@ -0,0 +1,182 @@
+package com.vaadin.framework8.migrate;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Generates benchmark inputs resembling Vaadin 8.x: about 550 server, 80
+ * shared and 1900 client compatibility classes, of which 40 are components,
+ * and sources referring to a mix of moved and not moved classes.
+ */
+final class SyntheticInputs {
+
+    static final int SERVER_CLASSES = 550;
+    static final int SHARED_CLASSES = 80;
+    static final int CLIENT_CLASSES = 1900;
+    static final int UI_CLASSES = 40;
+
+    private static final String[] SERVER_PACKAGES = { "ui", "data",
+            "data.util", "data.fieldgroup", "data.validator", "event",
+            "ui.components.calendar" };
+    private static final String[] SHARED_PACKAGES = { "shared.ui.label",
+            "shared.ui.grid", "shared.ui.datefield" };
+    private static final String[] CLIENT_PACKAGES = { "client",
+            "client.ui", "client.widget.grid", "client.connectors" };
+
+    private SyntheticInputs() {
+    }
+
+    static List<String> serverClasses() {
+        List<String> classes = new ArrayList<>();
+        for (int i = 0; i < UI_CLASSES; i++) {
+            classes.add("com.vaadin.v7.ui." + componentName(i));
+        }
+        classes.addAll(classes(SERVER_PACKAGES, SERVER_CLASSES - UI_CLASSES,
+                "Server"));
+        return classes;
+    }
+
+    static List<String> sharedClasses() {
+        return classes(SHARED_PACKAGES, SHARED_CLASSES, "Shared");
+    }
+
+    static List<String> clientClasses() {
+        return classes(CLIENT_PACKAGES, CLIENT_CLASSES, "Client");
+    }
+
+    private static List<String> classes(String[] packages, int count,
+            String prefix) {
+        List<String> classes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String name = "com.vaadin.v7." + packages[i % packages.length]
+                    + "." + prefix + "Class" + i;
+            // Every fifth class is an inner class
+            classes.add(i % 5 == 4 ? name + ".Inner" : name);
+        }
+        return classes;
+    }
+
+    static String componentName(int index) {
+        return "LegacyComponent" + (char) ('A' + index % 26) + index;
+    }
+
+    static String elementName(int index) {
+        return "legacy-component-" + (char) ('a' + index % 26) + index;
+    }
+
+    /**
+     * A Java file with the given number of import and type declaration
+     * lines, about a quarter of them referring to moved classes.
+     */
+    static String javaFile(int lines, long seed) {
+        Random random = new Random(seed);
+        List<String> server = serverClasses();
+        StringBuilder java = new StringBuilder(
+                "package com.example.app;\n\n");
+        for (int i = 0; i < lines; i++) {
+            String moved = server.get(random.nextInt(server.size()))
+                    .replace("com.vaadin.v7.", "com.vaadin.");
+            switch (random.nextInt(8)) {
+            case 0:
+                java.append("import ").append(moved).append(";\n");
+                break;
+            case 1:
+                java.append("class C").append(i).append(" extends ")
+                        .append(moved).append(" {}\n");
+                break;
+            case 2:
+                java.append("import com.vaadin.ui.Button").append(i)
+                        .append(";\n");
+                break;
+            default:
+                java.append("    private final String field").append(i)
+                        .append(" = \"value ").append(i).append("\";\n");
+            }
+        }
+        return java.toString();
+    }
+
+    /**
+     * A design file with the given number of elements, about half of them
+     * components moved to the compatibility packages.
+     */
+    static String designFile(int elements, long seed) {
+        Random random = new Random(seed);
+        StringBuilder html = new StringBuilder("<!doctype html>\n<html>\n"
+                + " <head>\n  <meta name=\"vaadin-version\" content=\"7.7.0\">\n"
+                + " </head>\n <body>\n");
+        for (int i = 0; i < elements; i++) {
+            String tag = random.nextBoolean()
+                    ? "vaadin-" + elementName(random.nextInt(UI_CLASSES))
+                    : "vaadin-button";
+            html.append("  <").append(tag).append(" _id=\"e").append(i)
+                    .append("\"></").append(tag).append(">\n");
+        }
+        return html.append(" </body>\n</html>\n").toString();
+    }
+
+    /**
+     * Creates the three compatibility jars in the Maven repository layout.
+     */
+    static void createCompatibilityJars(File repository, String version)
+            throws IOException {
+        createJar(repository, "vaadin-compatibility-server", version,
+                serverClasses());
+        createJar(repository, "vaadin-compatibility-shared", version,
+                sharedClasses());
+        createJar(repository, "vaadin-compatibility-client", version,
+                clientClasses());
+    }
+
+    private static void createJar(File repository, String moduleName,
+            String version, List<String> classes) throws IOException {
+        File jar = new File(repository, "com/vaadin/" + moduleName + "/"
+                + version + "/" + moduleName + "-" + version + ".jar");
+        jar.getParentFile().mkdirs();
+        Set<String> entries = new LinkedHashSet<>();
+        for (String cls : classes) {
+            int inner = cls.endsWith(".Inner") ? cls.lastIndexOf('.') : -1;
+            String name = inner < 0 ? cls.replace('.', '/')
+                    : cls.substring(0, inner).replace('.', '/') + "$Inner";
+            entries.add(name + ".class");
+        }
+        try (ZipOutputStream out = new ZipOutputStream(
+                new FileOutputStream(jar))) {
+            for (String entry : entries) {
+                out.putNextEntry(new ZipEntry(entry));
+                out.closeEntry();
+            }
+        }
+    }
+
+    /**
+     * Creates a project with the given number of Java files and a design
+     * file for every tenth of them.
+     */
+    static void createProject(File root, int javaFiles) throws IOException {
+        for (int i = 0; i < javaFiles; i++) {
+            File dir = new File(root,
+                    "src/main/java/com/example/app/module" + i % 20);
+            dir.mkdirs();
+            Files.write(new File(dir, "View" + i + ".java").toPath(),
+                    javaFile(100, i).getBytes(StandardCharsets.UTF_8));
+            if (i % 10 == 0) {
+                File resources = new File(root,
+                        "src/main/resources/com/example/app/module" + i % 20);
+                resources.mkdirs();
+                Files.write(new File(resources, "View" + i + ".html").toPath(),
+                        designFile(100, i).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+}
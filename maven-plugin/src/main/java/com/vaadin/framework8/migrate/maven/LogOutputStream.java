@@ -0,0 +1,49 @@
+package com.vaadin.framework8.migrate.maven;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Writes the output of a migration to the Maven log, one info message per
+ * line, prefixed with the name of the module.
+ */
+class LogOutputStream extends OutputStream {
+
+    private final Log log;
+    private final String prefix;
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+    LogOutputStream(Log log, String prefix) {
+        this.log = log;
+        this.prefix = prefix;
+    }
+
+    @Override
+    public synchronized void write(int b) {
+        if (b == '\n') {
+            flushLine();
+        } else {
+            line.write(b);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (line.size() > 0) {
+            flushLine();
+        }
+    }
+
+    private void flushLine() {
+        String message = new String(line.toByteArray(),
+                StandardCharsets.UTF_8);
+        line.reset();
+        if (message.endsWith("\r")) {
+            message = message.substring(0, message.length() - 1);
+        }
+        log.info(prefix + message);
+    }
+}
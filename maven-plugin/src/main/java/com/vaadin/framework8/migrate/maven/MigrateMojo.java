@@ -0,0 +1,357 @@
+package com.vaadin.framework8.migrate.maven;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+
+import com.vaadin.framework8.migrate.MigrationEngine;
+import com.vaadin.framework8.migrate.MigrationTool;
+
+/**
+ * Migrates all modules of the build in the Maven JVM.
+ * <p>
+ * The compatibility jars are taken from the dependencies Maven has resolved
+ * for the modules; the ones no module depends on, typically the client jar,
+ * are resolved through the repositories of the build. The class index of each
+ * version is built once and shared by all modules of that version, and the
+ * modules are migrated in parallel. Each module is migrated from its base
+ * directory, skipping the directories of its nested modules. The output of
+ * the migrations goes to the Maven log, prefixed with the module name.
+ */
+@Mojo(name = "migrate", aggregator = true, threadSafe = true, requiresDependencyResolution = ResolutionScope.COMPILE)
+public class MigrateMojo extends AbstractMojo {
+
+    private static final String GROUP_ID = "com.vaadin";
+
+    @Parameter(defaultValue = "${reactorProjects}", readonly = true, required = true)
+    private List<MavenProject> reactorProjects;
+
+    @Parameter(defaultValue = "${project}", readonly = true, required = true)
+    private MavenProject project;
+
+    @Parameter(defaultValue = "${repositorySystemSession}", readonly = true, required = true)
+    private RepositorySystemSession repositorySession;
+
+    @Component
+    private RepositorySystem repositorySystem;
+
+    /**
+     * The Vaadin Framework 8 version to migrate to. Defaults to the version
+     * of the compatibility dependencies of each module.
+     */
+    @Parameter(property = "vaadin.migration.version")
+    private String version;
+
+    /**
+     * The charset of the source files which are not detected as UTF-8.
+     * Defaults to the {@code project.build.sourceEncoding} of each module, or
+     * UTF-8 if it is not set.
+     */
+    @Parameter(property = "vaadin.migration.charset")
+    private String charset;
+
+    /**
+     * The number of threads shared by the modules. Defaults to the number of
+     * processors.
+     */
+    @Parameter(property = "vaadin.migration.threads")
+    private int threads;
+
+    /**
+     * Globs of the files to migrate, relative to each module. Defaults to all
+     * Java and HTML files.
+     */
+    @Parameter
+    private List<String> includes = Collections.emptyList();
+
+    /**
+     * Globs of the files and directories to skip, relative to each module.
+     */
+    @Parameter
+    private List<String> excludes = Collections.emptyList();
+
+    /**
+     * Whether files ignored by {@code .gitignore} files are skipped.
+     */
+    @Parameter(property = "vaadin.migration.gitIgnore", defaultValue = "true")
+    private boolean gitIgnore;
+
+    /**
+     * Whether files unchanged since the last incremental run are skipped.
+     */
+    @Parameter(property = "vaadin.migration.incremental", defaultValue = "false")
+    private boolean incremental;
+
+    /**
+     * Whether the charset of each file is detected.
+     */
+    @Parameter(property = "vaadin.migration.charsetDetection", defaultValue = "true")
+    private boolean charsetDetection;
+
+    /**
+     * The directory where the index of the compatibility classes is cached.
+     * Defaults to {@code ~/.cache/vaadin-framework8-migration-tool}.
+     */
+    @Parameter(property = "vaadin.migration.cacheDirectory")
+    private File cacheDirectory;
+
+    /**
+     * Whether the index of the compatibility classes is built from the jars
+     * on each run instead of being cached.
+     */
+    @Parameter(property = "vaadin.migration.noCache", defaultValue = "false")
+    private boolean noCache;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        // Compatibility jars resolved for the build, by version and module
+        Map<String, Map<String, File>> resolvedJars = new TreeMap<>();
+        Map<MavenProject, String> versions = new LinkedHashMap<>();
+        for (MavenProject module : reactorProjects) {
+            String moduleVersion = version;
+            for (Artifact artifact : module.getArtifacts()) {
+                if (isCompatibilityJar(artifact) && (version == null
+                        || version.equals(artifact.getVersion()))) {
+                    resolvedJars
+                            .computeIfAbsent(artifact.getVersion(),
+                                    v -> new HashMap<>())
+                            .putIfAbsent(artifact.getArtifactId(),
+                                    artifact.getFile());
+                    if (moduleVersion == null) {
+                        moduleVersion = artifact.getVersion();
+                    }
+                }
+            }
+            versions.put(module, moduleVersion);
+        }
+        if (version != null) {
+            resolvedJars.putIfAbsent(version, new HashMap<>());
+        } else if (resolvedJars.size() == 1) {
+            // Modules without compatibility dependencies, such as
+            // aggregators, use the only version of the build
+            String buildVersion = resolvedJars.keySet().iterator().next();
+            versions.replaceAll((module, moduleVersion) -> buildVersion);
+        }
+        if (resolvedJars.isEmpty()) {
+            throw new MojoFailureException("No module depends on "
+                    + MigrationEngine.COMPATIBILITY_MODULES.get(0)
+                    + ", set the version to migrate to with -Dvaadin.migration.version");
+        }
+
+        Map<String, MigrationEngine> engines = new HashMap<>();
+        for (Map.Entry<String, Map<String, File>> entry : resolvedJars
+                .entrySet()) {
+            engines.put(entry.getKey(),
+                    createEngine(entry.getKey(), entry.getValue()));
+        }
+
+        List<MavenProject> modules = new ArrayList<>();
+        Set<File> baseDirectories = new HashSet<>();
+        versions.forEach((module, moduleVersion) -> {
+            if (moduleVersion == null) {
+                getLog().warn("Skipping " + module.getArtifactId()
+                        + ", which has no compatibility dependencies to take the version from");
+            } else if (baseDirectories.add(module.getBasedir())) {
+                modules.add(module);
+            }
+        });
+        migrate(modules, versions, engines);
+    }
+
+    private void migrate(List<MavenProject> modules,
+            Map<MavenProject, String> versions,
+            Map<String, MigrationEngine> engines)
+            throws MojoExecutionException {
+        int totalThreads = threads > 0 ? threads
+                : Runtime.getRuntime().availableProcessors();
+        int parallelModules = Math.max(1,
+                Math.min(totalThreads, modules.size()));
+        ExecutorService executor = Executors
+                .newFixedThreadPool(parallelModules);
+        try {
+            Map<MavenProject, Future<?>> migrations = new LinkedHashMap<>();
+            for (MavenProject module : modules) {
+                MigrationTool migrationTool = createMigrationTool(module,
+                        engines.get(versions.get(module)));
+                migrationTool.setThreads(
+                        Math.max(1, totalThreads / parallelModules));
+                migrations.put(module, executor.submit(() -> {
+                    migrationTool.migrate();
+                    return null;
+                }));
+            }
+            MojoExecutionException failure = null;
+            for (Map.Entry<MavenProject, Future<?>> migration : migrations
+                    .entrySet()) {
+                String name = migration.getKey().getArtifactId();
+                try {
+                    migration.getValue().get();
+                    getLog().info("Migrated " + name);
+                } catch (ExecutionException e) {
+                    MojoExecutionException moduleFailure = new MojoExecutionException(
+                            "Migrating " + name + " failed", e.getCause());
+                    if (failure == null) {
+                        failure = moduleFailure;
+                    } else {
+                        failure.addSuppressed(moduleFailure);
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Migration was interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static boolean isCompatibilityJar(Artifact artifact) {
+        return GROUP_ID.equals(artifact.getGroupId())
+                && MigrationEngine.COMPATIBILITY_MODULES
+                        .contains(artifact.getArtifactId())
+                && "jar".equals(artifact.getType())
+                && artifact.getFile() != null;
+    }
+
+    private MigrationEngine createEngine(String engineVersion,
+            Map<String, File> jars) throws MojoExecutionException {
+        List<String> filenames = new ArrayList<>();
+        for (String moduleName : MigrationEngine.COMPATIBILITY_MODULES) {
+            File jar = jars.get(moduleName);
+            if (jar == null) {
+                jar = resolve(moduleName, engineVersion);
+            }
+            getLog().debug("Using " + moduleName + " " + engineVersion
+                    + " from " + jar);
+            filenames.add(jar.getAbsolutePath());
+        }
+        File cache = null;
+        if (!noCache) {
+            cache = cacheDirectory != null ? cacheDirectory
+                    : MigrationEngine.getDefaultCacheDirectory();
+        }
+        try {
+            return MigrationEngine.fromJars(engineVersion, filenames.get(0),
+                    filenames.get(1), filenames.get(2), cache,
+                    createLogOutput(""));
+        } catch (Exception e) {
+            throw new MojoExecutionException(
+                    "Unable to index the compatibility classes of "
+                            + engineVersion,
+                    e);
+        }
+    }
+
+    private File resolve(String moduleName, String engineVersion)
+            throws MojoExecutionException {
+        ArtifactRequest request = new ArtifactRequest(
+                new DefaultArtifact(GROUP_ID, moduleName, "jar",
+                        engineVersion),
+                project.getRemoteProjectRepositories(), null);
+        try {
+            return repositorySystem
+                    .resolveArtifact(repositorySession, request)
+                    .getArtifact().getFile();
+        } catch (ArtifactResolutionException e) {
+            throw new MojoExecutionException(
+                    "Unable to resolve " + moduleName + " " + engineVersion,
+                    e);
+        }
+    }
+
+    /**
+     * @return a stream printing each line to the Maven log with the given
+     *         prefix
+     */
+    private PrintStream createLogOutput(String prefix) {
+        try {
+            return new PrintStream(new LogOutputStream(getLog(), prefix),
+                    true, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 is always supported
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private MigrationTool createMigrationTool(MavenProject module,
+            MigrationEngine engine) {
+        String moduleCharset = charset;
+        if (moduleCharset == null) {
+            moduleCharset = module.getProperties()
+                    .getProperty("project.build.sourceEncoding");
+        }
+        MigrationTool migrationTool = new MigrationTool(engine.getVersion(),
+                module.getBasedir(),
+                moduleCharset != null ? Charset.forName(moduleCharset)
+                        : StandardCharsets.UTF_8);
+        migrationTool.setEngine(engine);
+        migrationTool.setOutput(
+                createLogOutput("[" + module.getArtifactId() + "] "));
+        migrationTool.setIncludes(includes);
+        List<String> moduleExcludes = new ArrayList<>(excludes);
+        moduleExcludes.addAll(getNestedModules(module));
+        migrationTool.setExcludes(moduleExcludes);
+        migrationTool.setGitIgnore(gitIgnore);
+        migrationTool.setIncremental(incremental);
+        migrationTool.setCharsetDetection(charsetDetection);
+        return migrationTool;
+    }
+
+    /**
+     * @return globs of the base directories of the modules inside the given
+     *         module, which are migrated separately
+     */
+    private Set<String> getNestedModules(MavenProject module) {
+        Path baseDirectory = module.getBasedir().toPath().toAbsolutePath()
+                .normalize();
+        Set<String> nested = new TreeSet<>();
+        for (MavenProject other : reactorProjects) {
+            Path otherDirectory = other.getBasedir().toPath()
+                    .toAbsolutePath().normalize();
+            if (!otherDirectory.equals(baseDirectory)
+                    && otherDirectory.startsWith(baseDirectory)) {
+                String relative = baseDirectory.relativize(otherDirectory)
+                        .toString().replace(File.separatorChar, '/');
+                // Escape the glob syntax
+                nested.add(relative.replaceAll("([*?\\[\\]{}\\\\])",
+                        "\\\\$1"));
+            }
+        }
+        return nested;
+    }
+}
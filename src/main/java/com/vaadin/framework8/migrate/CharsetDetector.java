@@ -0,0 +1,177 @@
+package com.vaadin.framework8.migrate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Detects the charset of a source file from its bytes.
+ * <p>
+ * A byte order mark decides the charset. Otherwise, a file which is valid
+ * UTF-8 is taken as UTF-8, since text in other charsets is very unlikely to
+ * be valid UTF-8 unless it is plain ASCII, which decodes the same in both.
+ * Any other file is decoded with the configured charset. The charsets are
+ * chosen so that the byte order mark is decoded as {@code U+FEFF} and written
+ * back unchanged.
+ */
+final class CharsetDetector {
+
+    private static final int BLOCK = 16;
+
+    private CharsetDetector() {
+    }
+
+    /**
+     * Detects the charset of the remaining bytes of the buffer without
+     * changing its position.
+     *
+     * @param fallback
+     *            the charset of files with neither a byte order mark nor
+     *            valid UTF-8 contents, not null
+     * @param checkUtf8
+     *            whether files without a byte order mark are checked for
+     *            UTF-8; should be false when the fallback is not
+     *            ASCII-compatible, since e.g. UTF-16 text is often valid
+     *            UTF-8
+     */
+    static Charset detect(ByteBuffer bytes, Charset fallback,
+            boolean checkUtf8) {
+        byte[] array = bytes.array();
+        int from = bytes.arrayOffset() + bytes.position();
+        int to = bytes.arrayOffset() + bytes.limit();
+        Charset bom = detectBom(array, from, to);
+        if (bom != null) {
+            return bom;
+        }
+        if (checkUtf8 && validUtf8Prefix(array, from, to) == to) {
+            return StandardCharsets.UTF_8;
+        }
+        return fallback;
+    }
+
+    /**
+     * Detects the charset of a file, reading it in chunks.
+     *
+     * @see #detect(ByteBuffer, Charset, boolean)
+     */
+    static Charset detect(Path file, Charset fallback, boolean checkUtf8)
+            throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] chunk = new byte[64 * 1024];
+            int length = in.read(chunk, 0, chunk.length);
+            if (length <= 0) {
+                return checkUtf8 ? StandardCharsets.UTF_8 : fallback;
+            }
+            Charset bom = detectBom(chunk, 0, length);
+            if (bom != null) {
+                return bom;
+            }
+            if (!checkUtf8) {
+                return fallback;
+            }
+            while (true) {
+                int valid = validUtf8Prefix(chunk, 0, length);
+                if (valid < 0) {
+                    return fallback;
+                }
+                // Carry over a sequence split by the end of the chunk
+                int carried = length - valid;
+                System.arraycopy(chunk, valid, chunk, 0, carried);
+                int read = in.read(chunk, carried, chunk.length - carried);
+                if (read < 0) {
+                    return carried == 0 ? StandardCharsets.UTF_8 : fallback;
+                }
+                length = carried + read;
+            }
+        }
+    }
+
+    private static Charset detectBom(byte[] bytes, int from, int to) {
+        int length = to - from;
+        if (length >= 3 && bytes[from] == (byte) 0xEF
+                && bytes[from + 1] == (byte) 0xBB
+                && bytes[from + 2] == (byte) 0xBF) {
+            return StandardCharsets.UTF_8;
+        }
+        if (length >= 2 && bytes[from] == (byte) 0xFE
+                && bytes[from + 1] == (byte) 0xFF) {
+            return StandardCharsets.UTF_16BE;
+        }
+        if (length >= 2 && bytes[from] == (byte) 0xFF
+                && bytes[from + 1] == (byte) 0xFE) {
+            return StandardCharsets.UTF_16LE;
+        }
+        return null;
+    }
+
+    /**
+     * Validates UTF-8 as defined in RFC 3629, rejecting overlong encodings,
+     * surrogates and code points above {@code U+10FFFF}.
+     *
+     * @return the index where an incomplete sequence at the end starts, or
+     *         {@code to} if there is none, or -1 if the bytes are not valid
+     *         UTF-8
+     */
+    static int validUtf8Prefix(byte[] bytes, int from, int to) {
+        int i = from;
+        while (i < to) {
+            // Skip ASCII in blocks; the JIT vectorizes the reduction
+            while (i + BLOCK <= to) {
+                int or = 0;
+                for (int j = i; j < i + BLOCK; j++) {
+                    or |= bytes[j];
+                }
+                if (or < 0) {
+                    break;
+                }
+                i += BLOCK;
+            }
+            if (i >= to) {
+                break;
+            }
+            int lead = bytes[i] & 0xFF;
+            if (lead < 0x80) {
+                i++;
+                continue;
+            }
+            int length;
+            int min = 0x80;
+            int max = 0xBF;
+            if (lead >= 0xC2 && lead <= 0xDF) {
+                length = 2;
+            } else if (lead >= 0xE0 && lead <= 0xEF) {
+                length = 3;
+                if (lead == 0xE0) {
+                    min = 0xA0;
+                } else if (lead == 0xED) {
+                    max = 0x9F;
+                }
+            } else if (lead >= 0xF0 && lead <= 0xF4) {
+                length = 4;
+                if (lead == 0xF0) {
+                    min = 0x90;
+                } else if (lead == 0xF4) {
+                    max = 0x8F;
+                }
+            } else {
+                return -1;
+            }
+            for (int j = 1; j < length; j++) {
+                if (i + j >= to) {
+                    return i;
+                }
+                int next = bytes[i + j] & 0xFF;
+                if (j == 1 ? next < min || next > max
+                        : next < 0x80 || next > 0xBF) {
+                    return -1;
+                }
+            }
+            i += length;
+        }
+        return to;
+    }
+}
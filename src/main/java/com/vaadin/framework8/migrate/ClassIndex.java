@@ -0,0 +1,253 @@
+package com.vaadin.framework8.migrate;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The classes moved to the compatibility packages in one Vaadin Framework 8
+ * version, by the compatibility jar which contains them.
+ * <p>
+ * The names of all jars are stored together in a {@link ClassNameTrie}, with
+ * a bit for each jar containing the class. The class sets are read-only views
+ * of the trie, which build the names only when iterated. The indexes of
+ * several versions can share one trie, each using its own bits of the masks.
+ */
+class ClassIndex {
+
+    private static final int SERVER = 1;
+    private static final int SHARED = 2;
+    private static final int CLIENT = 4;
+    private static final int ALL = SERVER | SHARED | CLIENT;
+    /**
+     * The number of bits of the masks used by each index in a shared trie.
+     */
+    static final int BITS = 3;
+    private static final String UI_PACKAGE = "com.vaadin.v7.ui";
+
+    private final ClassNameTrie names;
+    private final int shift;
+    private final Set<String> classes;
+    private final Set<String> serverClasses;
+    private final Set<String> sharedClasses;
+    private final Set<String> clientClasses;
+    private final Set<String> uiClasses;
+
+    ClassIndex(Collection<String> serverClasses,
+            Collection<String> sharedClasses,
+            Collection<String> clientClasses) {
+        this(new ClassNameTrie(), 0, serverClasses, sharedClasses,
+                clientClasses);
+        names.trim();
+    }
+
+    /**
+     * Adds the classes to a trie shared with the indexes of other versions.
+     * The trie must not be shared with other threads before all indexes have
+     * been added.
+     *
+     * @param shift
+     *            the position of the first of the {@link #BITS} bits of this
+     *            index in the masks of the trie
+     */
+    ClassIndex(ClassNameTrie names, int shift,
+            Collection<String> serverClasses,
+            Collection<String> sharedClasses,
+            Collection<String> clientClasses) {
+        this.names = names;
+        this.shift = shift;
+        serverClasses.forEach(cls -> names.add(cls, SERVER << shift));
+        sharedClasses.forEach(cls -> names.add(cls, SHARED << shift));
+        clientClasses.forEach(cls -> names.add(cls, CLIENT << shift));
+        classes = new ClassSet(node -> hasMask(node, ALL));
+        this.serverClasses = new ClassSet(node -> hasMask(node, SERVER));
+        this.sharedClasses = new ClassSet(node -> hasMask(node, SHARED));
+        this.clientClasses = new ClassSet(node -> hasMask(node, CLIENT));
+        int uiPackage = names.find(UI_PACKAGE);
+        uiClasses = new ClassSet(node -> hasMask(node, SERVER)
+                && names.getParent(node) == uiPackage);
+    }
+
+    private boolean hasMask(int node, int mask) {
+        return (names.getMask(node) & mask << shift) != 0;
+    }
+
+    /**
+     * Builds the index by scanning the compatibility jars in parallel.
+     */
+    static ClassIndex fromJars(String compatServerFilename,
+            String compatSharedFilename, String compatClientFilename)
+            throws IOException {
+        List<String> jars = Arrays.asList(compatServerFilename,
+                compatSharedFilename, compatClientFilename);
+        List<List<String>> v7Classes = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(jars.size());
+        try {
+            List<CompletableFuture<List<String>>> scans = new ArrayList<>();
+            for (String jar : jars) {
+                scans.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return findV7Classes(jar);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, executor));
+            }
+            for (CompletableFuture<List<String>> scan : scans) {
+                v7Classes.add(scan.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        } finally {
+            executor.shutdown();
+        }
+
+        // This is used in interface and will break more than it fixes
+        v7Classes.get(2).remove("com.vaadin.v7.client.ComponentConnector");
+
+        return new ClassIndex(v7Classes.get(0), v7Classes.get(1),
+                v7Classes.get(2));
+    }
+
+    private static List<String> findV7Classes(String jarFilename)
+            throws IOException {
+        List<String> entries = JarDirectory.findEntries(
+                Paths.get(jarFilename), "com/vaadin/v7", ".class");
+        if (entries == null) {
+            entries = new ArrayList<>();
+            try (ZipFile jar = new ZipFile(new File(jarFilename))) {
+                Enumeration<? extends ZipEntry> zipEntries = jar.entries();
+                while (zipEntries.hasMoreElements()) {
+                    ZipEntry entry = zipEntries.nextElement();
+                    String name = entry.getName();
+                    if (!entry.isDirectory()
+                            && name.startsWith("com/vaadin/v7")
+                            && name.endsWith(".class")) {
+                        entries.add(name);
+                    }
+                }
+            }
+        }
+
+        List<String> classes = new ArrayList<>(entries.size());
+        for (String name : entries) {
+            classes.add(name
+                    .substring(0, name.length() - ".class".length())
+                    .replace('/', '.').replace('$', '.'));
+        }
+        return classes;
+    }
+
+    /**
+     * @return the classes in any of the compatibility jars
+     */
+    Set<String> getClasses() {
+        return classes;
+    }
+
+    /**
+     * @return the classes in {@code vaadin-compatibility-server}
+     */
+    Set<String> getServerClasses() {
+        return serverClasses;
+    }
+
+    /**
+     * @return the classes in {@code vaadin-compatibility-shared}
+     */
+    Set<String> getSharedClasses() {
+        return sharedClasses;
+    }
+
+    /**
+     * @return the classes in {@code vaadin-compatibility-client}, except
+     *         {@code ComponentConnector}
+     */
+    Set<String> getClientClasses() {
+        return clientClasses;
+    }
+
+    /**
+     * @return the server classes directly in {@code com.vaadin.v7.ui}, which
+     *         can be used in declarative files
+     */
+    Set<String> getUiClasses() {
+        return uiClasses;
+    }
+
+    /**
+     * Maps each package to the simple names of its top-level classes in all
+     * jars. Nested classes are recognized by their enclosing class being in
+     * the index. The map is built on each call.
+     */
+    Map<String, Set<String>> getPackages() {
+        Map<String, Set<String>> packages = new HashMap<>();
+        for (int node = 1; node < names.size(); node++) {
+            int parent = names.getParent(node);
+            if (hasMask(node, ALL) && !hasMask(parent, ALL)) {
+                packages.computeIfAbsent(names.getName(parent),
+                        p -> new HashSet<>()).add(names.getSegment(node));
+            }
+        }
+        return packages;
+    }
+
+    /**
+     * The names of the nodes accepted by a filter. Looking up a name walks
+     * the trie instead of hashing the whole name.
+     */
+    private final class ClassSet extends AbstractSet<String> {
+        private final IntPredicate filter;
+        private final int[] nodes;
+
+        private ClassSet(IntPredicate filter) {
+            this.filter = filter;
+            nodes = IntStream.range(0, names.size()).filter(filter).toArray();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof String)) {
+                return false;
+            }
+            int node = names.find((String) o);
+            return node != ClassNameTrie.NOT_FOUND && filter.test(node);
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return Arrays.stream(nodes).mapToObj(names::getName).iterator();
+        }
+
+        @Override
+        public int size() {
+            return nodes.length;
+        }
+    }
+}
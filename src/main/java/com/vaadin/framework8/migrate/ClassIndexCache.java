@@ -0,0 +1,216 @@
+package com.vaadin.framework8.migrate;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Stores the {@link ClassIndex} of each Vaadin version in a compact binary
+ * file, so that the compatibility jars only need to be scanned once.
+ * <p>
+ * The file starts with a header containing the size and CRC-32 checksum of
+ * the three jars the index was built from; the file is rebuilt when any of
+ * them changes. The header is followed by the server, shared and client class
+ * sets, each as a count and the sorted class names, where each name only
+ * stores the suffix which differs from the previous name. The file is
+ * read through a memory mapping.
+ */
+class ClassIndexCache {
+
+    private static final int MAGIC = 0x56374349;
+    private static final int FORMAT_VERSION = 2;
+
+    private final Path directory;
+    private final PrintStream out;
+
+    /**
+     * @param directory
+     *            the directory to store the index files in, created when
+     *            needed, not null
+     * @param out
+     *            the stream to report the use of the cache to, not null
+     */
+    ClassIndexCache(Path directory, PrintStream out) {
+        this.directory = Objects.requireNonNull(directory);
+        this.out = Objects.requireNonNull(out);
+    }
+
+    /**
+     * @return {@code $XDG_CACHE_HOME/vaadin-framework8-migration-tool}, or
+     *         the same directory in {@code ~/.cache} if the variable is not
+     *         set
+     */
+    static Path getDefaultDirectory() {
+        String cacheHome = System.getenv("XDG_CACHE_HOME");
+        Path base = cacheHome != null && !cacheHome.isEmpty()
+                ? Paths.get(cacheHome)
+                : Paths.get(System.getProperty("user.home"), ".cache");
+        return base.resolve("vaadin-framework8-migration-tool");
+    }
+
+    /**
+     * Returns the cached index for the given jars, building and storing it
+     * if there is no valid cache file.
+     */
+    ClassIndex get(String version, String compatServerFilename,
+            String compatSharedFilename, String compatClientFilename)
+            throws IOException {
+        long[] checksums = { checksum(compatServerFilename),
+                checksum(compatSharedFilename),
+                checksum(compatClientFilename) };
+        Path file = directory.resolve("class-index-"
+                + version.replaceAll("[^A-Za-z0-9._-]", "_") + ".bin");
+
+        ClassIndex index = read(file, checksums);
+        if (index != null) {
+            out.println("Using cached compatibility class index ("
+                    + file + ")");
+            return index;
+        }
+
+        index = ClassIndex.fromJars(compatServerFilename,
+                compatSharedFilename, compatClientFilename);
+        try {
+            write(file, checksums, index);
+        } catch (IOException e) {
+            // The cache is only an optimization
+            out.println("Unable to write the class index cache "
+                    + file + ": " + e);
+        }
+        return index;
+    }
+
+    /**
+     * Combines the size of the jar with the CRC-32 checksum of its contents.
+     */
+    static long checksum(String jarFilename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(jarFilename),
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            CRC32 crc = new CRC32();
+            for (long position = 0; position < size;) {
+                long length = Math.min(size - position, Integer.MAX_VALUE);
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY,
+                        position, length));
+                position += length;
+            }
+            return size << 32 ^ crc.getValue();
+        }
+    }
+
+    private static ClassIndex read(Path file, long[] checksums)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel
+                    .map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC
+                    || buffer.getInt() != FORMAT_VERSION) {
+                return null;
+            }
+            for (long checksum : checksums) {
+                if (buffer.getLong() != checksum) {
+                    return null;
+                }
+            }
+            return new ClassIndex(readNames(buffer), readNames(buffer),
+                    readNames(buffer));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            // Truncated or otherwise corrupt, will be rebuilt
+            return null;
+        }
+    }
+
+    private static List<String> readNames(MappedByteBuffer buffer) {
+        int count = buffer.getInt();
+        // Each name takes at least four bytes, even in a corrupt file
+        List<String> names = new ArrayList<>(
+                Math.min(count, buffer.remaining() / 4));
+        byte[] name = new byte[256];
+        for (int i = 0; i < count; i++) {
+            int prefix = Short.toUnsignedInt(buffer.getShort());
+            int suffix = Short.toUnsignedInt(buffer.getShort());
+            if (prefix + suffix > name.length) {
+                byte[] larger = new byte[Math.max(prefix + suffix,
+                        name.length * 2)];
+                System.arraycopy(name, 0, larger, 0, prefix);
+                name = larger;
+            }
+            buffer.get(name, prefix, suffix);
+            names.add(new String(name, 0, prefix + suffix,
+                    StandardCharsets.UTF_8));
+        }
+        return names;
+    }
+
+    private void write(Path file, long[] checksums, ClassIndex index)
+            throws IOException {
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, "class-index", ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                for (long checksum : checksums) {
+                    out.writeLong(checksum);
+                }
+                writeNames(out, index.getServerClasses());
+                writeNames(out, index.getSharedClasses());
+                writeNames(out, index.getClientClasses());
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void writeNames(DataOutputStream out, Set<String> names)
+            throws IOException {
+        List<String> sorted = new ArrayList<>(names);
+        Collections.sort(sorted);
+        out.writeInt(sorted.size());
+        byte[] previous = new byte[0];
+        for (String name : sorted) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            int prefix = 0;
+            int max = Math.min(Math.min(previous.length, bytes.length), 0xFFFF);
+            while (prefix < max && previous[prefix] == bytes[prefix]) {
+                prefix++;
+            }
+            int suffix = bytes.length - prefix;
+            if (suffix > 0xFFFF) {
+                throw new IOException("Class name too long: " + name);
+            }
+            out.writeShort(prefix);
+            out.writeShort(suffix);
+            out.write(bytes, prefix, suffix);
+            previous = bytes;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.vaadin.framework8.migrate;
+
+import java.util.Arrays;
+
+/**
+ * Qualified class names stored as a trie of their segments, e.g.
+ * {@code com}, {@code vaadin}, {@code v7}, {@code ui} and {@code Label}.
+ * <p>
+ * Each distinct segment is stored once, and each node only as the index of
+ * its parent and segment in a few arrays, so the names of a package share
+ * their common prefix. The segments and the children of all nodes are found
+ * through two open addressing hash tables of ints, so looking up a name takes
+ * time proportional to its length and allocates nothing. Every node carries a
+ * bit mask, e.g. of the jars which contain the class, which is 0 for the
+ * packages and other nodes that have not been added themselves.
+ * <p>
+ * Nodes are only added while the owner builds the trie, which ends with
+ * {@link #trim()}; it must not be modified after it has been shared with
+ * other threads.
+ */
+final class ClassNameTrie {
+
+    static final int ROOT = 0;
+    static final int NOT_FOUND = -1;
+
+    private String[] segments = new String[64];
+    private int segmentCount;
+    /**
+     * The segment ids plus one by the hash of the segment, or 0 for an empty
+     * slot.
+     */
+    private int[] segmentTable = new int[128];
+    private int[] parents = new int[64];
+    private int[] nodeSegments = new int[64];
+    private int[] masks = new int[64];
+    private int nodes = 1;
+    /**
+     * The node ids plus one by the hash of their parent and segment, or 0 for
+     * an empty slot.
+     */
+    private int[] children = new int[128];
+
+    /**
+     * Adds the name, or only the mask if the name has already been added.
+     *
+     * @param mask
+     *            the bits to set in the mask of the node, not 0
+     * @return the node of the name
+     */
+    int add(String name, int mask) {
+        int node = ROOT;
+        int from = 0;
+        while (true) {
+            int dot = name.indexOf('.', from);
+            int to = dot < 0 ? name.length() : dot;
+            int segment = findSegment(name, from, to);
+            if (segment == NOT_FOUND) {
+                segment = addSegment(name.substring(from, to));
+            }
+            int child = findChild(node, segment);
+            node = child != NOT_FOUND ? child : addChild(node, segment);
+            if (dot < 0) {
+                masks[node] |= mask;
+                return node;
+            }
+            from = dot + 1;
+        }
+    }
+
+    /**
+     * @return the node of the name, or {@link #NOT_FOUND} if neither the name
+     *         nor any name starting with it has been added
+     */
+    int find(String name) {
+        int node = ROOT;
+        int from = 0;
+        while (true) {
+            int dot = name.indexOf('.', from);
+            int to = dot < 0 ? name.length() : dot;
+            int segment = findSegment(name, from, to);
+            if (segment == NOT_FOUND) {
+                return NOT_FOUND;
+            }
+            node = findChild(node, segment);
+            if (dot < 0 || node == NOT_FOUND) {
+                return node;
+            }
+            from = dot + 1;
+        }
+    }
+
+    /**
+     * Shrinks the arrays to the number of segments and nodes, once all names
+     * have been added.
+     */
+    void trim() {
+        segments = Arrays.copyOf(segments, segmentCount);
+        parents = Arrays.copyOf(parents, nodes);
+        nodeSegments = Arrays.copyOf(nodeSegments, nodes);
+        masks = Arrays.copyOf(masks, nodes);
+    }
+
+    /**
+     * @return the number of nodes, including the root; the nodes are
+     *         numbered from 0
+     */
+    int size() {
+        return nodes;
+    }
+
+    int getMask(int node) {
+        return masks[node];
+    }
+
+    int getParent(int node) {
+        return parents[node];
+    }
+
+    String getSegment(int node) {
+        return segments[nodeSegments[node]];
+    }
+
+    /**
+     * @return the qualified name of the node, or an empty string for the
+     *         root
+     */
+    String getName(int node) {
+        if (node == ROOT) {
+            return "";
+        }
+        int length = -1;
+        for (int n = node; n != ROOT; n = parents[n]) {
+            length += getSegment(n).length() + 1;
+        }
+        char[] name = new char[length];
+        int end = length;
+        for (int n = node; n != ROOT; n = parents[n]) {
+            String segment = getSegment(n);
+            end -= segment.length();
+            segment.getChars(0, segment.length(), name, end);
+            if (end > 0) {
+                name[--end] = '.';
+            }
+        }
+        return new String(name);
+    }
+
+    private int findSegment(String name, int from, int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + name.charAt(i);
+        }
+        int mask = segmentTable.length - 1;
+        int slot = spread(hash) & mask;
+        while (segmentTable[slot] != 0) {
+            String segment = segments[segmentTable[slot] - 1];
+            if (segment.length() == to - from
+                    && name.regionMatches(from, segment, 0, to - from)) {
+                return segmentTable[slot] - 1;
+            }
+            slot = slot + 1 & mask;
+        }
+        return NOT_FOUND;
+    }
+
+    private int addSegment(String segment) {
+        if (segmentCount == segments.length) {
+            segments = Arrays.copyOf(segments, segmentCount * 2);
+        }
+        int id = segmentCount++;
+        segments[id] = segment;
+        if (segmentCount * 2 > segmentTable.length) {
+            // Keep the table at most half full
+            segmentTable = new int[segmentTable.length * 2];
+            for (int s = 0; s < id; s++) {
+                insertSegment(s);
+            }
+        }
+        insertSegment(id);
+        return id;
+    }
+
+    private void insertSegment(int id) {
+        int mask = segmentTable.length - 1;
+        int slot = spread(segments[id].hashCode()) & mask;
+        while (segmentTable[slot] != 0) {
+            slot = slot + 1 & mask;
+        }
+        segmentTable[slot] = id + 1;
+    }
+
+    private int findChild(int parent, int segment) {
+        int mask = children.length - 1;
+        int slot = hash(parent, segment) & mask;
+        while (children[slot] != 0) {
+            int child = children[slot] - 1;
+            if (parents[child] == parent && nodeSegments[child] == segment) {
+                return child;
+            }
+            slot = slot + 1 & mask;
+        }
+        return NOT_FOUND;
+    }
+
+    private int addChild(int parent, int segment) {
+        if (nodes == parents.length) {
+            int capacity = nodes * 2;
+            parents = Arrays.copyOf(parents, capacity);
+            nodeSegments = Arrays.copyOf(nodeSegments, capacity);
+            masks = Arrays.copyOf(masks, capacity);
+        }
+        int node = nodes++;
+        parents[node] = parent;
+        nodeSegments[node] = segment;
+        if (nodes * 2 > children.length) {
+            // Keep the table at most half full
+            children = new int[children.length * 2];
+            for (int n = 1; n < node; n++) {
+                insert(n);
+            }
+        }
+        insert(node);
+        return node;
+    }
+
+    private void insert(int node) {
+        int mask = children.length - 1;
+        int slot = hash(parents[node], nodeSegments[node]) & mask;
+        while (children[slot] != 0) {
+            slot = slot + 1 & mask;
+        }
+        children[slot] = node + 1;
+    }
+
+    private static int hash(int parent, int segment) {
+        return spread(parent * 0x9E3779B9 + segment);
+    }
+
+    private static int spread(int hash) {
+        return hash ^ hash >>> 16;
+    }
+}
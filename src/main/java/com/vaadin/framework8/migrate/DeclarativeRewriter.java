@@ -0,0 +1,203 @@
+package com.vaadin.framework8.migrate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Rewrites declarative (HTML) files in a single pass.
+ * <p>
+ * Start and end tags of components moved to the compatibility packages, in
+ * the {@code <v-...>} and {@code <vaadin-...>} forms, are renamed to
+ * {@code <vaadin7-...>}. A start tag is only renamed when the tag name is
+ * followed by {@code >} or a space, and an end tag when followed by
+ * {@code >}. The tag names are computed once from the class names, and the
+ * tags are found by stopping at each {@code <} instead of searching the file
+ * once per component. Finally the {@code vaadin-version} meta tag is updated
+ * if it refers to Vaadin 7.
+ */
+class DeclarativeRewriter {
+
+    private static final Pattern VERSION_META = Pattern
+            .compile("<meta(.*)name=\"vaadin-version\"(.*)content=\"7.*\"(.*)>");
+
+    private static final String LEGACY_PREFIX = "v-";
+    private static final String PREFIX = "vaadin-";
+    private static final String NEW_PREFIX = "vaadin7-";
+
+    private final Set<String> tagNames = new HashSet<>();
+    private final String versionMeta;
+
+    /**
+     * @param uiClasses
+     *            the fully qualified names of the components moved to the
+     *            compatibility packages, not null
+     * @param version
+     *            the Vaadin version to set in the {@code vaadin-version} meta
+     *            tag, not null
+     */
+    DeclarativeRewriter(Collection<String> uiClasses, String version) {
+        for (String v7Class : uiClasses) {
+            String simpleClassName = v7Class
+                    .substring(v7Class.lastIndexOf('.') + 1);
+            tagNames.add(classNameToElementName(simpleClassName));
+        }
+        // The version meta tag used to be updated once per component
+        versionMeta = uiClasses.isEmpty() ? null
+                : "<meta name=\"vaadin-version\" content=\"" + version + "\">";
+    }
+
+    String rewrite(String htmlFile) {
+        return rewrite(htmlFile, null);
+    }
+
+    /**
+     * @param hits
+     *            counts the renamed start and end tags by the tag name
+     *            without prefix, or null
+     */
+    String rewrite(String htmlFile, RuleHits hits) {
+        StringBuilder result = null;
+        int copied = 0;
+        int length = htmlFile.length();
+        int i = htmlFile.indexOf('<');
+        while (i >= 0) {
+            int nameStart = i + 1;
+            boolean endTag = nameStart < length
+                    && htmlFile.charAt(nameStart) == '/';
+            if (endTag) {
+                nameStart++;
+            }
+            int prefixEnd = -1;
+            if (htmlFile.startsWith(PREFIX, nameStart)) {
+                prefixEnd = nameStart + PREFIX.length();
+            } else if (htmlFile.startsWith(LEGACY_PREFIX, nameStart)) {
+                prefixEnd = nameStart + LEGACY_PREFIX.length();
+            }
+            if (prefixEnd >= 0) {
+                int nameEnd = prefixEnd;
+                while (nameEnd < length
+                        && isTagNamePart(htmlFile.charAt(nameEnd))) {
+                    nameEnd++;
+                }
+                String tagName = null;
+                if (nameEnd < length && isTagNameEnd(htmlFile.charAt(nameEnd),
+                        endTag)) {
+                    tagName = htmlFile.substring(prefixEnd, nameEnd);
+                }
+                if (tagName != null && tagNames.contains(tagName)) {
+                    if (hits != null) {
+                        hits.hit(tagName);
+                    }
+                    if (result == null) {
+                        result = new StringBuilder(length + 64);
+                    }
+                    result.append(htmlFile, copied, nameStart)
+                            .append(NEW_PREFIX);
+                    copied = prefixEnd;
+                    i = nameEnd;
+                }
+            }
+            i = htmlFile.indexOf('<', i + 1);
+        }
+
+        if (result != null) {
+            htmlFile = result.append(htmlFile, copied, length).toString();
+        }
+        if (versionMeta != null) {
+            htmlFile = VERSION_META.matcher(htmlFile).replaceAll(versionMeta);
+        }
+        return htmlFile;
+    }
+
+    /**
+     * Rewrites a file in an ASCII-compatible charset chunk by chunk, see
+     * {@link JavaRewriter#isAsciiCompatible(java.nio.charset.Charset)}.
+     * Neither the tags nor the version
+     * meta tag can span lines, so each chunk ends at a line break and is
+     * rewritten like a whole file. Memory use only depends on the size of the
+     * buffer, unless a single line is longer than the buffer.
+     *
+     * @param buffer
+     *            a heap buffer for the chunks, replaced by a larger one if a
+     *            line does not fit in it
+     * @param charset
+     *            the charset of the file, not null
+     * @param hits
+     *            counts the renamed start and end tags, or null
+     * @return true if anything was rewritten, false if the output is equal
+     *         to the input
+     */
+    boolean rewrite(ReadableByteChannel in, OutputStream out,
+            ByteBuffer buffer, Charset charset, RuleHits hits)
+            throws IOException {
+        boolean rewritten = false;
+        boolean eof = false;
+        buffer.clear();
+        while (!eof) {
+            while (buffer.hasRemaining() && !eof) {
+                eof = in.read(buffer) < 0;
+            }
+            byte[] bytes = buffer.array();
+            int limit = buffer.position();
+            int end = limit;
+            if (!eof) {
+                while (end > 0 && bytes[end - 1] != '\n') {
+                    end--;
+                }
+                if (end == 0) {
+                    ByteBuffer larger = ByteBuffer
+                            .allocate(buffer.capacity() * 2);
+                    buffer.flip();
+                    buffer = larger.put(buffer);
+                    continue;
+                }
+            }
+            String chunk = new String(bytes, 0, end, charset);
+            String migrated = rewrite(chunk, hits);
+            if (chunk.equals(migrated)) {
+                out.write(bytes, 0, end);
+            } else {
+                out.write(migrated.getBytes(charset));
+                rewritten = true;
+            }
+            System.arraycopy(bytes, end, bytes, 0, limit - end);
+            buffer.clear();
+            buffer.position(limit - end);
+        }
+        return rewritten;
+    }
+
+    private static boolean isTagNamePart(char c) {
+        return c == '-' || Character.isJavaIdentifierPart(c);
+    }
+
+    private static boolean isTagNameEnd(char c, boolean endTag) {
+        return c == '>' || !endTag && c == ' ';
+    }
+
+    /**
+     * From Design.java
+     */
+    private static String classNameToElementName(String className) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < className.length(); i++) {
+            char c = className.charAt(i);
+            if (Character.isUpperCase(c)) {
+                if (i > 0) {
+                    result.append("-");
+                }
+                result.append(Character.toLowerCase(c));
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,201 @@
+package com.vaadin.framework8.migrate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The rules of one {@code .gitignore} file, chained to the rules of the
+ * {@code .gitignore} files in the parent directories.
+ * <p>
+ * Supports comments, negation with {@code !}, directory-only patterns ending
+ * with {@code /}, patterns anchored to the directory of the
+ * {@code .gitignore} file and the {@code *}, {@code ?}, {@code [...]} and
+ * {@code **} wildcards.
+ */
+final class GitIgnore {
+
+    private final GitIgnore parent;
+    /**
+     * The directory of the {@code .gitignore} file relative to the walked
+     * root, either empty or ending with {@code /}.
+     */
+    private final String base;
+    private final List<Rule> rules;
+
+    private GitIgnore(GitIgnore parent, String base, List<Rule> rules) {
+        this.parent = parent;
+        this.base = base;
+        this.rules = rules;
+    }
+
+    /**
+     * Reads the {@code .gitignore} file in the given directory, if there is
+     * one.
+     *
+     * @param parent
+     *            the rules of the parent directories, may be null
+     * @param directory
+     *            the directory to read the {@code .gitignore} file from
+     * @param relativeDirectory
+     *            the directory relative to the walked root, using {@code /}
+     *            as the separator, empty for the root itself
+     * @return the rules for the directory, which is the parent (possibly
+     *         null) if the directory has no rules of its own
+     */
+    static GitIgnore load(GitIgnore parent, Path directory,
+            String relativeDirectory) throws IOException {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(directory.resolve(".gitignore"),
+                    StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return parent;
+        }
+        List<Rule> rules = new ArrayList<>();
+        for (String line : lines) {
+            Rule rule = Rule.parse(line);
+            if (rule != null) {
+                rules.add(rule);
+            }
+        }
+        if (rules.isEmpty()) {
+            return parent;
+        }
+        String base = relativeDirectory.isEmpty() ? ""
+                : relativeDirectory + "/";
+        return new GitIgnore(parent, base, rules);
+    }
+
+    /**
+     * Checks whether the given path is ignored. The last matching rule wins,
+     * and rules of deeper {@code .gitignore} files take precedence over the
+     * rules of their parents.
+     *
+     * @param relativePath
+     *            the path relative to the walked root, using {@code /} as the
+     *            separator
+     * @param directory
+     *            whether the path is a directory
+     */
+    boolean isIgnored(String relativePath, boolean directory) {
+        for (GitIgnore ignore = this; ignore != null; ignore = ignore.parent) {
+            if (!relativePath.startsWith(ignore.base)) {
+                continue;
+            }
+            String path = relativePath.substring(ignore.base.length());
+            for (int i = ignore.rules.size() - 1; i >= 0; i--) {
+                Rule rule = ignore.rules.get(i);
+                if (rule.matches(path, directory)) {
+                    return !rule.negated;
+                }
+            }
+        }
+        return false;
+    }
+
+    static final class Rule {
+        private final Pattern pattern;
+        private final boolean negated;
+        private final boolean directoryOnly;
+
+        private Rule(Pattern pattern, boolean negated,
+                boolean directoryOnly) {
+            this.pattern = pattern;
+            this.negated = negated;
+            this.directoryOnly = directoryOnly;
+        }
+
+        boolean matches(String path, boolean directory) {
+            return (directory || !directoryOnly)
+                    && pattern.matcher(path).matches();
+        }
+
+        /**
+         * @return the rule, or null if the line is blank or a comment
+         */
+        static Rule parse(String line) {
+            String glob = trimTrailingSpaces(line);
+            if (glob.isEmpty() || glob.startsWith("#")) {
+                return null;
+            }
+            boolean negated = glob.startsWith("!");
+            if (negated || glob.startsWith("\\!") || glob.startsWith("\\#")) {
+                glob = glob.substring(1);
+            }
+            boolean directoryOnly = glob.endsWith("/");
+            if (directoryOnly) {
+                glob = glob.substring(0, glob.length() - 1);
+            }
+            if (glob.isEmpty()) {
+                return null;
+            }
+            // A slash anywhere but at the end anchors the pattern to the
+            // directory of the .gitignore file
+            boolean anchored = glob.indexOf('/') >= 0;
+            if (glob.startsWith("/")) {
+                glob = glob.substring(1);
+            }
+            String regex = toRegex(glob);
+            if (!anchored) {
+                regex = "(?:.*/)?" + regex;
+            }
+            return new Rule(Pattern.compile(regex), negated, directoryOnly);
+        }
+
+        private static String trimTrailingSpaces(String line) {
+            int end = line.length();
+            while (end > 0 && line.charAt(end - 1) == ' '
+                    && (end < 2 || line.charAt(end - 2) != '\\')) {
+                end--;
+            }
+            return line.substring(0, end);
+        }
+
+        private static String toRegex(String glob) {
+            StringBuilder regex = new StringBuilder();
+            int length = glob.length();
+            for (int i = 0; i < length; i++) {
+                char c = glob.charAt(i);
+                if (c == '*' && glob.startsWith("**", i)
+                        && (i == 0 || glob.charAt(i - 1) == '/')
+                        && (i + 2 == length || glob.charAt(i + 2) == '/')) {
+                    if (i + 2 == length) {
+                        // Trailing "/**" matches everything inside
+                        regex.append(".*");
+                    } else {
+                        // Leading "**/" or inner "/**/" matches zero or
+                        // more directories
+                        regex.append("(?:.*/)?");
+                        i++;
+                    }
+                    i++;
+                } else if (c == '*') {
+                    regex.append("[^/]*");
+                } else if (c == '?') {
+                    regex.append("[^/]");
+                } else if (c == '[' && glob.indexOf(']', i + 1) > i + 1) {
+                    int end = glob.indexOf(']', i + 2);
+                    String set = glob.substring(i + 1, end);
+                    if (set.startsWith("!")) {
+                        set = "^" + set.substring(1);
+                    }
+                    regex.append('[').append(set.replace("\\", "\\\\")
+                            .replace("[", "\\[")).append(']');
+                    i = end;
+                } else if (c == '\\' && i + 1 < length) {
+                    i++;
+                    regex.append(Pattern.quote(String.valueOf(glob.charAt(i))));
+                } else {
+                    regex.append(Pattern.quote(String.valueOf(c)));
+                }
+            }
+            return regex.toString();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.vaadin.framework8.migrate;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the names of the entries of a jar from its central directory, the
+ * table of contents at the end of the file, without reading the entries
+ * themselves or creating an object for each of them.
+ * <p>
+ * Jars which need the ZIP64 extensions, or whose central directory is not
+ * where the end record says, are not supported; for those, the names have to
+ * be read with {@link java.util.zip.ZipFile}.
+ */
+final class JarDirectory {
+
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int END_LENGTH = 22;
+    private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+    private static final int ENTRY_SIGNATURE = 0x02014b50;
+    private static final int ENTRY_LENGTH = 46;
+
+    private JarDirectory() {
+    }
+
+    /**
+     * Returns the names of the entries starting with the given prefix and
+     * ending with the given suffix.
+     *
+     * @return the names, or null if the central directory cannot be read
+     *         without ZIP64 support
+     */
+    static List<String> findEntries(Path jar, String prefix, String suffix)
+            throws IOException {
+        byte[] prefixBytes = prefix.getBytes(StandardCharsets.UTF_8);
+        byte[] suffixBytes = suffix.getBytes(StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(jar,
+                StandardOpenOption.READ)) {
+            ByteBuffer directory = readDirectory(channel);
+            if (directory == null) {
+                return null;
+            }
+            List<String> names = new ArrayList<>();
+            byte[] name = new byte[256];
+            while (directory.remaining() >= ENTRY_LENGTH) {
+                int entry = directory.position();
+                if (directory.getInt(entry) != ENTRY_SIGNATURE) {
+                    return null;
+                }
+                int nameLength = Short
+                        .toUnsignedInt(directory.getShort(entry + 28));
+                int extraLength = Short
+                        .toUnsignedInt(directory.getShort(entry + 30));
+                int commentLength = Short
+                        .toUnsignedInt(directory.getShort(entry + 32));
+                int next = entry + ENTRY_LENGTH + nameLength + extraLength
+                        + commentLength;
+                if (next > directory.limit()) {
+                    return null;
+                }
+                if (nameLength > name.length) {
+                    name = new byte[nameLength];
+                }
+                directory.position(entry + ENTRY_LENGTH);
+                directory.get(name, 0, nameLength);
+                if (matches(name, nameLength, prefixBytes, suffixBytes)) {
+                    names.add(new String(name, 0, nameLength,
+                            StandardCharsets.UTF_8));
+                }
+                directory.position(next);
+            }
+            return names;
+        }
+    }
+
+    /**
+     * Locates the end record and reads the central directory it points to.
+     */
+    private static ByteBuffer readDirectory(FileChannel channel)
+            throws IOException {
+        long size = channel.size();
+        int tailLength = (int) Math.min(size,
+                END_LENGTH + MAX_COMMENT_LENGTH);
+        ByteBuffer tail = read(channel, size - tailLength, tailLength);
+        // The end record is followed by a comment of at most 64 KiB
+        for (int end = tailLength - END_LENGTH; end >= 0; end--) {
+            if (tail.getInt(end) != END_SIGNATURE) {
+                continue;
+            }
+            int commentLength = Short.toUnsignedInt(tail.getShort(end + 20));
+            if (end + END_LENGTH + commentLength != tailLength) {
+                // The signature is part of the comment or of an entry
+                continue;
+            }
+            int entries = Short.toUnsignedInt(tail.getShort(end + 10));
+            long directorySize = Integer.toUnsignedLong(tail.getInt(end + 12));
+            long directoryOffset = Integer
+                    .toUnsignedLong(tail.getInt(end + 16));
+            if (entries == 0xFFFF || directorySize == 0xFFFFFFFFL
+                    || directoryOffset == 0xFFFFFFFFL
+                    || directoryOffset + directorySize > size) {
+                return null;
+            }
+            return read(channel, directoryOffset, (int) directorySize);
+        }
+        return null;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position,
+            int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static boolean matches(byte[] name, int length, byte[] prefix,
+            byte[] suffix) {
+        if (length < prefix.length + suffix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (name[i] != prefix[i]) {
+                return false;
+            }
+        }
+        for (int i = 0; i < suffix.length; i++) {
+            if (name[length - suffix.length + i] != suffix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,947 @@
+package com.vaadin.framework8.migrate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Rewrites class references in Java sources in a single linear scan.
+ * <p>
+ * The scanner tokenizes the file just enough to skip comments, string and
+ * character literals and text blocks, and reads every qualified name in the
+ * code, e.g. in imports, static imports, type arguments, annotations and
+ * method bodies. The longest prefix of the name which is a renamed class is
+ * looked up in a hash table built once and rewritten, so that also nested
+ * classes and static members of a renamed class are found. Names following
+ * a {@code .}, i.e. member accesses, are skipped.
+ * <p>
+ * A wildcard import of a package containing renamed classes, e.g.
+ * {@code import com.vaadin.ui.*;}, is kept for the classes which have not
+ * been moved, and an explicit import of the new class is added at the end of
+ * its line for each renamed class of the package used by its simple name.
+ * Identifiers following a {@code .}, declared names, i.e. identifiers
+ * following a type, and method names, i.e. identifiers followed by a
+ * {@code (} other than in {@code new} and annotations, are not taken as uses.
+ * Names which are already imported by a single-type import or declared in
+ * the file are left alone. Blanks are allowed around the {@code .*} of the
+ * import, but not within the package name, and comments or line breaks
+ * within the import are not supported. The rewriter is immutable and can be
+ * used by several threads at once.
+ * <p>
+ * Large files in an ASCII-compatible charset can also be rewritten as bytes,
+ * chunk by chunk, see {@link #rewrite(ReadableByteChannel, OutputStream,
+ * ByteBuffer, RuleHits)}.
+ */
+class JavaRewriter {
+
+    private static final int CODE = 0;
+    private static final int NAME = 1;
+    private static final int LINE_COMMENT = 2;
+    private static final int BLOCK_COMMENT = 3;
+    private static final int STRING = 4;
+    private static final int CHARACTER = 5;
+    private static final int TEXT_BLOCK = 6;
+
+    private static final String IMPORT = "import";
+    private static final String[] DECLARATIONS = { "class", "interface",
+            "enum" };
+    /**
+     * The keywords which cannot be the type of a declaration, including the
+     * contextual ones which can precede a type, and the literals.
+     */
+    private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+            "abstract", "assert", "break", "case", "catch", "class", "const",
+            "continue", "default", "do", "else", "enum", "extends", "final",
+            "finally", "for", "goto", "if", "implements", "import",
+            "instanceof", "interface", "native", "new", "package", "private",
+            "protected", "public", "return", "static", "strictfp", "super",
+            "switch", "synchronized", "this", "throw", "throws", "transient",
+            "try", "volatile", "while", "permits", "yield", "true", "false",
+            "null"));
+
+    private static final int NONE = 0;
+    private static final int RENAME = 1;
+    private static final int WILDCARD = 2;
+
+    /*
+     * The kinds of the token before an identifier, for telling the uses of a
+     * class from other identifiers.
+     */
+    private static final int OTHER = 0;
+    private static final int TYPE = 1;
+    private static final int DOT = 2;
+    private static final int NEW = 3;
+    private static final int ANNOTATION = 4;
+    private static final int ANNOTATION_NAME = 5;
+
+    /**
+     * The new fully qualified names by the old ones, looked up rather than
+     * copied, as it can be a view of the class index.
+     */
+    private final Map<String, String> renames;
+    /**
+     * The new fully qualified names of the renamed classes by their simple
+     * name, by their old package.
+     */
+    private final Map<String, Map<String, String>> packages = new HashMap<>();
+    /**
+     * The first segments of the renamed classes, e.g. {@code com}, so that
+     * most names are ruled out without a lookup.
+     */
+    private final String[] firstSegments;
+    private final int longestName;
+    /**
+     * The number of characters the scanner may look ahead: the longest name
+     * followed by the end of a wildcard import, or the {@code import}
+     * keyword and the character after it.
+     */
+    private final int window;
+
+    /**
+     * @param renames
+     *            the class renames, from the old fully qualified name to the
+     *            new one, not null.
+     */
+    JavaRewriter(Map<String, String> renames) {
+        this(renames, Collections.emptyMap());
+    }
+
+    /**
+     * @param renames
+     *            the class renames, from the old fully qualified name to the
+     *            new one, not null.
+     * @param packages
+     *            the simple names of the renamed top-level classes by their
+     *            old package, for resolving wildcard imports, not null
+     */
+    JavaRewriter(Map<String, String> renames,
+            Map<String, ? extends Collection<String>> packages) {
+        this.renames = Objects.requireNonNull(renames);
+        Objects.requireNonNull(packages).forEach((name, classes) -> {
+            Map<String, String> renamed = new HashMap<>();
+            for (String simpleName : classes) {
+                String to = renames.get(name + "." + simpleName);
+                if (to != null) {
+                    renamed.put(simpleName, to);
+                }
+            }
+            if (!renamed.isEmpty()) {
+                this.packages.put(name, renamed);
+            }
+        });
+        Set<String> segments = new HashSet<>();
+        int longest = 0;
+        for (String from : renames.keySet()) {
+            int dot = from.indexOf('.');
+            segments.add(dot < 0 ? from : from.substring(0, dot));
+            longest = Math.max(longest, from.length());
+        }
+        firstSegments = segments.toArray(new String[0]);
+        longestName = longest;
+        window = Math.max(longestName + 2, IMPORT.length() + 1);
+    }
+
+    /**
+     * Checks whether files in the given charset can be rewritten as bytes:
+     * every byte in the ASCII range has to stand for that ASCII character,
+     * which holds for UTF-8 and the single-byte charsets extending ASCII.
+     */
+    static boolean isAsciiCompatible(Charset charset) {
+        if (charset.equals(StandardCharsets.UTF_8)) {
+            return true;
+        }
+        if (!charset.canEncode()
+                || charset.newEncoder().maxBytesPerChar() != 1) {
+            return false;
+        }
+        byte[] ascii = new byte[128];
+        for (int i = 0; i < ascii.length; i++) {
+            ascii[i] = (byte) i;
+        }
+        return new String(ascii, charset)
+                .equals(new String(ascii, StandardCharsets.US_ASCII));
+    }
+
+    String rewrite(String javaFile) {
+        return rewrite(javaFile, null);
+    }
+
+    /**
+     * @param hits
+     *            counts the applied renames and added imports by the old
+     *            fully qualified name, or null
+     * @return the rewritten file, or the same instance if nothing was
+     *         rewritten
+     */
+    String rewrite(String javaFile, RuleHits hits) {
+        int length = javaFile.length();
+        Scanner scanner = new Scanner(javaFile);
+        scanner.limit = length;
+        StringBuilder result = null;
+        int copied = 0;
+        boolean rewritten = false;
+        int event;
+        while ((event = scanner.find(length)) != NONE) {
+            if (result == null) {
+                result = new StringBuilder(length + 64);
+            }
+            if (event == RENAME) {
+                if (hits != null) {
+                    hits.hit(scanner.name);
+                }
+                result.append(javaFile, copied, scanner.start)
+                        .append(scanner.rename);
+                rewritten = true;
+            } else {
+                result.append(javaFile, copied, scanner.end);
+                scanner.setOffset(result.length());
+            }
+            copied = scanner.end;
+        }
+
+        if (result == null) {
+            return javaFile;
+        }
+        result.append(javaFile, copied, length);
+        if (scanner.wildcards != null) {
+            // Insert from the end so that the earlier offsets stay valid
+            for (int k = scanner.wildcards.size() - 1; k >= 0; k--) {
+                WildcardImport wildcard = scanner.wildcards.get(k);
+                String imports = scanner.getImports(wildcard, hits);
+                if (!imports.isEmpty()) {
+                    result.insert(wildcard.offset, imports);
+                    rewritten = true;
+                }
+            }
+        }
+        return rewritten ? result.toString() : javaFile;
+    }
+
+    /**
+     * Rewrites a file in an ASCII-compatible charset without decoding it,
+     * reading it chunk by chunk. Only the bytes the scanner could still need
+     * to look at, at most the length of the longest name and two more, are
+     * carried over to the next chunk, together with the state of the
+     * scanner, so memory use does not depend on the size of the file.
+     * <p>
+     * The imports to add at the end of the line of a wildcard import are only
+     * known at the end of the file, so the output following such an import is
+     * held in memory until then.
+     *
+     * @param buffer
+     *            a heap buffer for the chunks, replaced by a larger one if it
+     *            cannot hold two of the longest names
+     * @param hits
+     *            counts the applied renames and added imports by the old
+     *            fully qualified name, or null
+     * @return true if any reference was rewritten, false if the output is
+     *         equal to the input
+     */
+    boolean rewrite(ReadableByteChannel in, OutputStream out,
+            ByteBuffer buffer, RuleHits hits) throws IOException {
+        if (buffer.capacity() < 2 * window) {
+            buffer = ByteBuffer.allocate(2 * window);
+        }
+        byte[] bytes = buffer.array();
+        Scanner scanner = new Scanner(new AsciiChars(bytes));
+        OutputStream target = out;
+        ByteArrayOutputStream held = null;
+        boolean rewritten = false;
+        boolean eof = false;
+        buffer.clear();
+        while (!eof) {
+            while (buffer.hasRemaining() && !eof) {
+                eof = in.read(buffer) < 0;
+            }
+            int limit = buffer.position();
+            scanner.limit = limit;
+            scanner.position = 0;
+            int copied = 0;
+            // Whatever the scanner looks at before the end is in the chunk
+            int end = eof ? limit : limit - window;
+            int event;
+            while ((event = scanner.find(end)) != NONE) {
+                if (event == RENAME) {
+                    if (hits != null) {
+                        hits.hit(scanner.name);
+                    }
+                    target.write(bytes, copied, scanner.start - copied);
+                    target.write(scanner.rename
+                            .getBytes(StandardCharsets.US_ASCII));
+                    rewritten = true;
+                } else {
+                    target.write(bytes, copied, scanner.end - copied);
+                    if (held == null) {
+                        held = new ByteArrayOutputStream();
+                        target = held;
+                    }
+                    scanner.setOffset(held.size());
+                }
+                copied = scanner.end;
+            }
+            int scanned = Math.min(scanner.position, limit);
+            target.write(bytes, copied, scanned - copied);
+            System.arraycopy(bytes, scanned, bytes, 0, limit - scanned);
+            buffer.clear();
+            buffer.position(limit - scanned);
+        }
+        if (held != null) {
+            byte[] heldBytes = held.toByteArray();
+            int from = 0;
+            for (WildcardImport wildcard : scanner.wildcards) {
+                String imports = scanner.getImports(wildcard, hits);
+                out.write(heldBytes, from, wildcard.offset - from);
+                out.write(imports.getBytes(StandardCharsets.US_ASCII));
+                rewritten |= !imports.isEmpty();
+                from = wildcard.offset;
+            }
+            out.write(heldBytes, from, heldBytes.length - from);
+        }
+        return rewritten;
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        // Non-ASCII characters, or bytes of them, are taken as identifier
+        // characters; a name containing them cannot match any of the renames
+        return c >= 0x80 || Character.isJavaIdentifierStart(c);
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return c >= 0x80 || Character.isJavaIdentifierPart(c);
+    }
+
+    /**
+     * Tokenizes the text from one position to the next rewritten reference
+     * or wildcard import of a renamed package. The state is kept between
+     * calls, so the text can be given in chunks.
+     */
+    private final class Scanner {
+        private final CharSequence text;
+        /**
+         * The end of the text available to the scanner.
+         */
+        private int limit;
+        private int position;
+        private int state = CODE;
+        /**
+         * The last reference found.
+         */
+        private int start;
+        private int end;
+        private String name;
+        /**
+         * The new name of the last rename found.
+         */
+        private String rename;
+
+        private boolean inImport;
+        /**
+         * The last segment of the name in the current import statement, or
+         * null outside imports.
+         */
+        private StringBuilder segment;
+        /**
+         * The simple names imported by single-type imports.
+         */
+        private final Set<String> imported = new HashSet<>();
+        /**
+         * The wildcard imports of renamed packages, or null if there are
+         * none; the rest of the fields are only used after the first one.
+         */
+        private List<WildcardImport> wildcards;
+        /**
+         * The index of the first wildcard import on the current line, or -1
+         * if the line of the last one has ended.
+         */
+        private int lineWildcards = -1;
+        private boolean lineEnded;
+        /**
+         * The wildcard import of each renamed simple name, or a null value
+         * if it is imported by several.
+         */
+        private Map<String, WildcardImport> available;
+        private Set<String> used;
+        private Set<String> declared;
+        private boolean declaring;
+        /**
+         * The kind of the token before the current one.
+         */
+        private int previous = OTHER;
+        /**
+         * The nesting of angle brackets inside the type parameters of a
+         * generic method or class, or 0 outside of them.
+         */
+        private int typeParameterDepth;
+        /**
+         * A renamed simple name which is a use unless the next token shows
+         * otherwise, and the kind of the token before it, or null.
+         */
+        private String candidate;
+        private int candidatePrevious;
+
+        private Scanner(CharSequence text) {
+            this.text = text;
+        }
+
+        /**
+         * Scans to the next reference to rewrite or wildcard import which
+         * starts before the given index.
+         *
+         * @return {@link #RENAME} if a reference was found,
+         *         {@link #WILDCARD} if a wildcard import or the end of its
+         *         line was found, with the imports to add after {@link #end},
+         *         or {@link #NONE} if the scanner reached the index
+         */
+        private int find(int stop) {
+            while (position < stop) {
+                char c = text.charAt(position);
+                switch (state) {
+                case CODE:
+                    if (candidate != null && c != '/'
+                            && !Character.isWhitespace(c)) {
+                        endUse(c);
+                    }
+                    if (c == '/' && position + 1 < limit
+                            && text.charAt(position + 1) == '/') {
+                        state = LINE_COMMENT;
+                        position += 2;
+                    } else if (c == '/' && position + 1 < limit
+                            && text.charAt(position + 1) == '*') {
+                        state = BLOCK_COMMENT;
+                        position += 2;
+                    } else if (c == '"') {
+                        previous = OTHER;
+                        if (isTextBlockDelimiter(position)) {
+                            state = TEXT_BLOCK;
+                            position += 3;
+                        } else {
+                            state = STRING;
+                            position++;
+                        }
+                    } else if (c == '\'') {
+                        previous = OTHER;
+                        state = CHARACTER;
+                        position++;
+                    } else if (isIdentifierStart(c)) {
+                        state = NAME;
+                        int event = identifier(position);
+                        if (event != NONE) {
+                            return event;
+                        }
+                    } else if (c == '.' || isIdentifierPart(c)) {
+                        // A member access or a number
+                        previous = c == '.' ? DOT : OTHER;
+                        state = NAME;
+                        position++;
+                    } else if ((c == '\n' || c == '\r')
+                            && lineWildcards >= 0) {
+                        return endLine(c);
+                    } else if (c == '-' && position + 1 < limit
+                            && text.charAt(position + 1) == '>') {
+                        previous = OTHER;
+                        position += 2;
+                    } else {
+                        if (c == ';' && inImport) {
+                            endImport();
+                        }
+                        if (c == '<') {
+                            openAngleBracket();
+                        } else if (c == '>') {
+                            closeAngleBracket();
+                        } else if (c == ']') {
+                            previous = TYPE;
+                        } else if (c == '@') {
+                            previous = ANNOTATION;
+                        } else if (!Character.isWhitespace(c)) {
+                            if (c == '(' || c == ')' || c == ';' || c == '{'
+                                    || c == '}' || c == '=') {
+                                typeParameterDepth = 0;
+                            }
+                            previous = OTHER;
+                        }
+                        position++;
+                    }
+                    break;
+                case NAME:
+                    if (c == '.' || isIdentifierPart(c)) {
+                        if (segment != null) {
+                            if (c == '.') {
+                                segment.setLength(0);
+                            } else {
+                                segment.append(c);
+                            }
+                        }
+                        if (previous != ANNOTATION_NAME) {
+                            if (c == '.') {
+                                previous = DOT;
+                            } else if (previous == DOT) {
+                                previous = TYPE;
+                            }
+                        }
+                        position++;
+                    } else {
+                        state = CODE;
+                    }
+                    break;
+                case LINE_COMMENT:
+                    // The line break is left to the code
+                    if (c == '\n' || c == '\r') {
+                        state = CODE;
+                    } else {
+                        position++;
+                    }
+                    break;
+                case BLOCK_COMMENT:
+                    if (c == '*' && position + 1 < limit
+                            && text.charAt(position + 1) == '/') {
+                        state = CODE;
+                        position += 2;
+                    } else {
+                        position++;
+                    }
+                    break;
+                case TEXT_BLOCK:
+                    if (c == '\\') {
+                        position += 2;
+                    } else if (c == '"' && isTextBlockDelimiter(position)) {
+                        state = CODE;
+                        position += 3;
+                    } else {
+                        position++;
+                    }
+                    break;
+                default:
+                    // A string or character literal, which cannot span lines
+                    if (c == '\\') {
+                        position += 2;
+                    } else {
+                        if (c == (state == STRING ? '"' : '\'') || c == '\n'
+                                || c == '\r') {
+                            state = CODE;
+                        }
+                        position++;
+                    }
+                    break;
+                }
+            }
+            return NONE;
+        }
+
+        private boolean isTextBlockDelimiter(int index) {
+            return index + 2 < limit && text.charAt(index) == '"'
+                    && text.charAt(index + 1) == '"'
+                    && text.charAt(index + 2) == '"';
+        }
+
+        /**
+         * Reads the name starting at the given index in the code, and moves
+         * the scanner past its first identifier or the rewritten reference.
+         */
+        private int identifier(int index) {
+            // An identifier longer than the window cannot be a keyword or a
+            // renamed name
+            int max = Math.min(limit, index + window - 1);
+            int firstEnd = index + 1;
+            while (firstEnd < max && isIdentifierPart(text.charAt(firstEnd))) {
+                firstEnd++;
+            }
+            boolean complete = firstEnd == limit
+                    || !isIdentifierPart(text.charAt(firstEnd));
+            position = firstEnd;
+            if (!complete) {
+                startSegment(index, firstEnd);
+                return NONE;
+            }
+            if (!inImport && isKeyword(index, firstEnd, IMPORT)) {
+                inImport = true;
+                segment = new StringBuilder();
+                return NONE;
+            }
+            if (available != null) {
+                trackUsage(index, firstEnd);
+            }
+            int event = match(index, firstEnd);
+            if (event == RENAME) {
+                position = end;
+                if (segment != null) {
+                    segment.setLength(0);
+                    segment.append(name, name.lastIndexOf('.') + 1,
+                            name.length());
+                }
+            } else if (event == WILDCARD) {
+                position = end;
+                state = CODE;
+                inImport = false;
+                segment = null;
+            } else {
+                startSegment(index, firstEnd);
+            }
+            return event;
+        }
+
+        private void startSegment(int from, int to) {
+            if (segment != null) {
+                segment.setLength(0);
+                segment.append(text, from, to);
+            }
+        }
+
+        /**
+         * Ends the line of the last wildcard imports, after which their
+         * imports are added.
+         */
+        private int endLine(char c) {
+            String lineSeparator = c == '\r' ? "\r\n" : "\n";
+            for (int k = lineWildcards; k < wildcards.size(); k++) {
+                wildcards.get(k).lineSeparator = lineSeparator;
+            }
+            start = position;
+            end = position;
+            lineEnded = true;
+            return WILDCARD;
+        }
+
+        /**
+         * Sets the position in the output after the wildcard imports on the
+         * current line, once the last {@link #WILDCARD} event has been
+         * copied to the output. Until the line ends, this is the position
+         * after the last import.
+         */
+        private void setOffset(int offset) {
+            for (int k = lineWildcards; k < wildcards.size(); k++) {
+                wildcards.get(k).offset = offset;
+            }
+            if (lineEnded) {
+                lineWildcards = -1;
+                lineEnded = false;
+            }
+        }
+
+        /**
+         * Tells type parameters apart from type arguments: the type
+         * arguments follow a type, or a dot for a method call, and type
+         * parameters follow a modifier or start the declaration.
+         */
+        private void openAngleBracket() {
+            if (typeParameterDepth > 0) {
+                typeParameterDepth++;
+            } else if (previous != TYPE && previous != DOT) {
+                typeParameterDepth = 1;
+            }
+            previous = OTHER;
+        }
+
+        /**
+         * Closes type arguments, after which a name is declared, or type
+         * parameters, after which the return type of a generic method or
+         * the name of a generic constructor follows.
+         */
+        private void closeAngleBracket() {
+            if (typeParameterDepth > 0 && --typeParameterDepth == 0) {
+                previous = OTHER;
+            } else {
+                previous = TYPE;
+            }
+        }
+
+        private void endImport() {
+            if (segment.length() > 0) {
+                imported.add(segment.toString());
+            }
+            inImport = false;
+            segment = null;
+        }
+
+        /**
+         * Records the simple names of renamed classes used in the code and
+         * declared in the file, once a wildcard import has made them
+         * available.
+         */
+        private void trackUsage(int from, int to) {
+            if (inImport) {
+                return;
+            }
+            String identifier = text.subSequence(from, to).toString();
+            int before = previous;
+            if (before == ANNOTATION || before == ANNOTATION_NAME) {
+                previous = ANNOTATION_NAME;
+            } else if (identifier.equals("new")) {
+                previous = NEW;
+            } else {
+                previous = KEYWORDS.contains(identifier) ? OTHER : TYPE;
+            }
+            if (declaring) {
+                declared.add(identifier);
+                declaring = false;
+                return;
+            }
+            if (before != DOT) {
+                for (String keyword : DECLARATIONS) {
+                    if (isKeyword(from, to, keyword)) {
+                        declaring = true;
+                        return;
+                    }
+                }
+            }
+            if (before == DOT || !available.containsKey(identifier)) {
+                return;
+            }
+            candidate = identifier;
+            candidatePrevious = before;
+            char next = to < limit ? text.charAt(to) : ' ';
+            if (next != '/' && !Character.isWhitespace(next)) {
+                endUse(next);
+            }
+        }
+
+        /**
+         * Decides whether the candidate is a use of the class by the
+         * character following it: a method name is followed by {@code (},
+         * and a declared name by anything but a {@code .}.
+         */
+        private void endUse(char next) {
+            boolean use;
+            if (next == '(') {
+                use = candidatePrevious == NEW
+                        || candidatePrevious == ANNOTATION;
+            } else {
+                use = next == '.' || candidatePrevious != TYPE;
+            }
+            if (use) {
+                used.add(candidate);
+            }
+            candidate = null;
+        }
+
+        private boolean isKeyword(int from, int to, String keyword) {
+            return keyword.length() == to - from
+                    && regionMatches(from, keyword);
+        }
+
+        /**
+         * Looks up the longest prefix of the qualified name starting at the
+         * given index which is a renamed class, reading at most the length of
+         * the longest renamed class and the character after it. Failing that,
+         * checks whether the name is a wildcard import of a renamed package.
+         *
+         * @param firstEnd
+         *            the end of the first identifier of the name
+         */
+        private int match(int index, int firstEnd) {
+            if (!isFirstSegment(index, firstEnd)) {
+                return NONE;
+            }
+            int max = Math.min(limit, index + longestName);
+            int i = firstEnd;
+            rename = null;
+            while (i == limit || !isIdentifierPart(text.charAt(i))) {
+                String prefix = text.subSequence(index, i).toString();
+                String to = renames.get(prefix);
+                if (to != null) {
+                    name = prefix;
+                    rename = to;
+                    end = i;
+                }
+                if (i == max || text.charAt(i) != '.') {
+                    break;
+                }
+                int segmentStart = ++i;
+                while (i < max && isIdentifierPart(text.charAt(i))) {
+                    i++;
+                }
+                if (i == segmentStart) {
+                    break;
+                }
+            }
+            start = index;
+            if (rename != null) {
+                return RENAME;
+            }
+            if (inImport) {
+                return wildcard(index, i);
+            }
+            return NONE;
+        }
+
+        /**
+         * Checks whether the name between the given indexes is a package
+         * name followed by {@code .*;}, with optional blanks before the dot,
+         * the star and the semicolon, and contains renamed classes.
+         *
+         * @param to
+         *            the end of the name, after the dot if it is directly
+         *            followed by the star
+         */
+        private int wildcard(int from, int to) {
+            // Only read what the scanner may look ahead
+            int max = Math.min(limit, from + window);
+            int packageEnd = to;
+            int i = to;
+            if (text.charAt(i - 1) == '.') {
+                packageEnd = i - 1;
+            } else {
+                i = skipBlanks(i, max);
+                if (i == limit || text.charAt(i) != '.') {
+                    return NONE;
+                }
+                i++;
+            }
+            i = skipBlanks(i, max);
+            if (i == limit || text.charAt(i) != '*') {
+                return NONE;
+            }
+            i = skipBlanks(i + 1, max);
+            if (i == limit || text.charAt(i) != ';') {
+                return NONE;
+            }
+            String packageName = text.subSequence(from, packageEnd).toString();
+            Map<String, String> classes = packages.get(packageName);
+            if (classes == null) {
+                return NONE;
+            }
+            end = i + 1;
+            WildcardImport wildcard = new WildcardImport(packageName,
+                    classes);
+            if (wildcards == null) {
+                wildcards = new ArrayList<>();
+                available = new HashMap<>();
+                used = new TreeSet<>();
+                declared = new HashSet<>();
+            }
+            if (lineWildcards < 0) {
+                lineWildcards = wildcards.size();
+            }
+            wildcards.add(wildcard);
+            for (String simpleName : classes.keySet()) {
+                if (!available.containsKey(simpleName)) {
+                    available.put(simpleName, wildcard);
+                } else if (available.get(simpleName) != null && !available
+                        .get(simpleName).packageName.equals(packageName)) {
+                    available.put(simpleName, null);
+                }
+            }
+            return WILDCARD;
+        }
+
+        /**
+         * Returns the imports to add at the end of the line of the given
+         * wildcard import, each preceded by a line separator. Only valid at
+         * the end of the file.
+         */
+        private String getImports(WildcardImport wildcard, RuleHits hits) {
+            StringBuilder imports = new StringBuilder();
+            for (String simpleName : used) {
+                if (available.get(simpleName) == wildcard
+                        && !imported.contains(simpleName)
+                        && !declared.contains(simpleName)) {
+                    imports.append(wildcard.lineSeparator).append(IMPORT)
+                            .append(' ')
+                            .append(wildcard.classes.get(simpleName))
+                            .append(';');
+                    if (hits != null) {
+                        hits.hit(wildcard.packageName + "." + simpleName);
+                    }
+                }
+            }
+            return imports.toString();
+        }
+
+        private int skipBlanks(int from, int max) {
+            int i = from;
+            while (i < max
+                    && (text.charAt(i) == ' ' || text.charAt(i) == '\t')) {
+                i++;
+            }
+            return i;
+        }
+
+        private boolean isFirstSegment(int from, int to) {
+            for (String segment : firstSegments) {
+                if (segment.length() == to - from
+                        && regionMatches(from, segment)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean regionMatches(int from, String segment) {
+            for (int j = 0; j < segment.length(); j++) {
+                if (text.charAt(from + j) != segment.charAt(j)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A wildcard import of a package containing renamed classes.
+     */
+    private static final class WildcardImport {
+        private final String packageName;
+        private final Map<String, String> classes;
+        /**
+         * The line separator of the line of the import.
+         */
+        private String lineSeparator = "\n";
+        /**
+         * The position in the output at the end of the line of the import,
+         * or after the import if the line does not end.
+         */
+        private int offset;
+
+        WildcardImport(String packageName, Map<String, String> classes) {
+            this.packageName = packageName;
+            this.classes = classes;
+        }
+    }
+
+    /**
+     * Bytes in an ASCII-compatible charset as characters: ASCII bytes stand
+     * for themselves, and the others for some non-ASCII character.
+     */
+    private static final class AsciiChars implements CharSequence {
+        private final byte[] bytes;
+
+        private AsciiChars(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int length() {
+            return bytes.length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (bytes[index] & 0xff);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(bytes, start, end - start,
+                    StandardCharsets.ISO_8859_1);
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.vaadin.framework8.migrate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses the JSON written by the tool itself, e.g. the reports of the shards
+ * of a run which are merged.
+ * <p>
+ * Objects are read as maps keeping the order of their members, arrays as
+ * lists, integers as {@link Long}, other numbers as {@link Double}, and
+ * {@code true}, {@code false} and {@code null} as themselves.
+ */
+final class JsonReader {
+
+    private final String json;
+    private int pos;
+
+    private JsonReader(String json) {
+        this.json = json;
+    }
+
+    /**
+     * @throws IOException
+     *             if the text is not a single valid JSON value
+     */
+    static Object read(String json) throws IOException {
+        JsonReader reader = new JsonReader(json);
+        Object value = reader.readValue();
+        reader.skipWhitespace();
+        if (reader.pos < json.length()) {
+            throw reader.error("Unexpected text after the value");
+        }
+        return value;
+    }
+
+    private Object readValue() throws IOException {
+        skipWhitespace();
+        if (pos >= json.length()) {
+            throw error("Unexpected end of input");
+        }
+        char c = json.charAt(pos);
+        switch (c) {
+        case '{':
+            return readObject();
+        case '[':
+            return readArray();
+        case '"':
+            return readString();
+        case 't':
+            return readLiteral("true", Boolean.TRUE);
+        case 'f':
+            return readLiteral("false", Boolean.FALSE);
+        case 'n':
+            return readLiteral("null", null);
+        default:
+            if (c == '-' || c >= '0' && c <= '9') {
+                return readNumber();
+            }
+            throw error("Unexpected character '" + c + "'");
+        }
+    }
+
+    private Map<String, Object> readObject() throws IOException {
+        Map<String, Object> object = new LinkedHashMap<>();
+        pos++;
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+            return object;
+        }
+        while (true) {
+            skipWhitespace();
+            if (peek() != '"') {
+                throw error("Expected a member name");
+            }
+            String name = readString();
+            skipWhitespace();
+            expect(':');
+            object.put(name, readValue());
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return object;
+            }
+            expect(',');
+        }
+    }
+
+    private List<Object> readArray() throws IOException {
+        List<Object> array = new ArrayList<>();
+        pos++;
+        skipWhitespace();
+        if (peek() == ']') {
+            pos++;
+            return array;
+        }
+        while (true) {
+            array.add(readValue());
+            skipWhitespace();
+            if (peek() == ']') {
+                pos++;
+                return array;
+            }
+            expect(',');
+        }
+    }
+
+    private String readString() throws IOException {
+        StringBuilder string = new StringBuilder();
+        pos++;
+        while (true) {
+            if (pos >= json.length()) {
+                throw error("Unterminated string");
+            }
+            char c = json.charAt(pos++);
+            if (c == '"') {
+                return string.toString();
+            }
+            if (c != '\\') {
+                string.append(c);
+                continue;
+            }
+            if (pos >= json.length()) {
+                throw error("Unterminated string");
+            }
+            char escape = json.charAt(pos++);
+            switch (escape) {
+            case '"':
+            case '\\':
+            case '/':
+                string.append(escape);
+                break;
+            case 'b':
+                string.append('\b');
+                break;
+            case 'f':
+                string.append('\f');
+                break;
+            case 'n':
+                string.append('\n');
+                break;
+            case 'r':
+                string.append('\r');
+                break;
+            case 't':
+                string.append('\t');
+                break;
+            case 'u':
+                if (pos + 4 > json.length()) {
+                    throw error("Invalid unicode escape");
+                }
+                try {
+                    string.append((char) Integer
+                            .parseInt(json.substring(pos, pos + 4), 16));
+                } catch (NumberFormatException e) {
+                    throw error("Invalid unicode escape");
+                }
+                pos += 4;
+                break;
+            default:
+                throw error("Invalid escape '\\" + escape + "'");
+            }
+        }
+    }
+
+    private Object readLiteral(String literal, Object value)
+            throws IOException {
+        if (!json.startsWith(literal, pos)) {
+            throw error("Expected " + literal);
+        }
+        pos += literal.length();
+        return value;
+    }
+
+    private Number readNumber() throws IOException {
+        int start = pos;
+        boolean integer = true;
+        while (pos < json.length()) {
+            char c = json.charAt(pos);
+            if (c == '.' || c == 'e' || c == 'E') {
+                integer = false;
+            } else if (!(c >= '0' && c <= '9' || c == '-' || c == '+')) {
+                break;
+            }
+            pos++;
+        }
+        String number = json.substring(start, pos);
+        try {
+            return integer ? (Number) Long.valueOf(number)
+                    : (Number) Double.valueOf(number);
+        } catch (NumberFormatException e) {
+            pos = start;
+            throw error("Invalid number " + number);
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < json.length()) {
+            char c = json.charAt(pos);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private char peek() {
+        return pos < json.length() ? json.charAt(pos) : '\0';
+    }
+
+    private void expect(char c) throws IOException {
+        if (peek() != c) {
+            throw error("Expected '" + c + "'");
+        }
+        pos++;
+    }
+
+    private IOException error(String message) {
+        return new IOException(message + " at offset " + pos);
+    }
+}
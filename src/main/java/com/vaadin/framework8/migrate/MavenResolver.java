@@ -1,24 +1,21 @@
 package com.vaadin.framework8.migrate;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Stream;
 
 import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
 import org.eclipse.aether.DefaultRepositorySystemSession;
 import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.artifact.Artifact;
 import org.eclipse.aether.artifact.DefaultArtifact;
-import org.eclipse.aether.collection.CollectRequest;
 import org.eclipse.aether.connector.basic.BasicRepositoryConnectorFactory;
-import org.eclipse.aether.graph.Dependency;
 import org.eclipse.aether.impl.DefaultServiceLocator;
 import org.eclipse.aether.repository.LocalRepository;
 import org.eclipse.aether.repository.RemoteRepository;
-import org.eclipse.aether.resolution.ArtifactResult;
-import org.eclipse.aether.resolution.DependencyRequest;
-import org.eclipse.aether.resolution.DependencyResolutionException;
-import org.eclipse.aether.resolution.DependencyResult;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
 import org.eclipse.aether.spi.connector.RepositoryConnectorFactory;
 import org.eclipse.aether.spi.connector.transport.TransporterFactory;
 import org.eclipse.aether.transport.file.FileTransporterFactory;
@@ -27,23 +24,52 @@ import org.eclipse.aether.transport.http.HttpTransporterFactory;
 public class MavenResolver {
     private static final RepositorySystem repoSystem = createServiceLocator()
             .getService(RepositorySystem.class);
-    private static final List<RemoteRepository> repositories = Arrays.asList(
-            new RemoteRepository.Builder("central", "default",
-                    "https://repo.maven.apache.org/maven2").build(),
-            new RemoteRepository.Builder("vaadin-prereleases", "default",
-                    "https://maven.vaadin.com/vaadin-prereleases").build(),
-            new RemoteRepository.Builder("snapshot", "default",
-                    "https://oss.sonatype.org/content/repositories/vaadin-snapshots")
-                            .build());
+    /**
+     * The repositories used when none are given.
+     */
+    public static final List<String> DEFAULT_REPOSITORIES = Collections
+            .unmodifiableList(Arrays.asList(
+                    "https://repo.maven.apache.org/maven2",
+                    "https://maven.vaadin.com/vaadin-prereleases",
+                    "https://oss.sonatype.org/content/repositories/vaadin-snapshots"));
+    private static final List<String> DEFAULT_REPOSITORY_IDS = Arrays
+            .asList("central", "vaadin-prereleases", "snapshot");
 
     private final DefaultRepositorySystemSession session;
+    private final List<RemoteRepository> repositories;
 
     public MavenResolver(String targetFolder) {
+        this(targetFolder, DEFAULT_REPOSITORIES, false);
+    }
+
+    /**
+     * @param targetFolder
+     *            the local repository to resolve into
+     * @param repositoryUrls
+     *            the URLs of the repositories to resolve from
+     * @param offline
+     *            true to only allow {@code file:} repositories
+     */
+    public MavenResolver(String targetFolder, List<String> repositoryUrls,
+            boolean offline) {
         session = MavenRepositorySystemUtils.newSession();
 
         session.setLocalRepositoryManager(repoSystem.newLocalRepositoryManager(
                 session, new LocalRepository(targetFolder)));
+        if (offline) {
+            session.setOffline(true);
+            session.setConfigProperty("aether.offline.protocols", "file");
+        }
         session.setReadOnly();
+
+        repositories = new ArrayList<>();
+        for (String url : repositoryUrls) {
+            int index = DEFAULT_REPOSITORIES.indexOf(url);
+            String id = index >= 0 ? DEFAULT_REPOSITORY_IDS.get(index)
+                    : "repository-" + repositories.size();
+            repositories.add(
+                    new RemoteRepository.Builder(id, "default", url).build());
+        }
     }
 
     private static DefaultServiceLocator createServiceLocator() {
@@ -58,20 +84,22 @@ public class MavenResolver {
         return locator;
     }
 
-    public Stream<Artifact> resolve(String groupId, String artifactId,
+    /**
+     * Resolves the jar of the given artifact, without its dependencies. Can
+     * be called concurrently from several threads, which then share the
+     * session of this resolver.
+     */
+    public Artifact resolve(String groupId, String artifactId,
             String version) {
-        CollectRequest collectRequest = new CollectRequest(new Dependency(
+        ArtifactRequest artifactRequest = new ArtifactRequest(
                 new DefaultArtifact(groupId, artifactId, "jar", version),
-                "compile"), repositories);
+                repositories, null);
 
         try {
-            DependencyResult dependencyResult = repoSystem.resolveDependencies(
-                    session, new DependencyRequest(collectRequest, null));
-            return dependencyResult.getArtifactResults().stream()
-                    .map(ArtifactResult::getArtifact);
-        } catch (DependencyResolutionException e) {
+            return repoSystem.resolveArtifact(session, artifactRequest)
+                    .getArtifact();
+        } catch (ArtifactResolutionException e) {
             throw new RuntimeException(e);
         }
-
     }
 }
@@ -2,27 +2,77 @@ package com.vaadin.framework8.migrate;
 
 import org.apache.commons.io.Charsets;
 
+import java.io.BufferedReader;
 import java.io.File;
-import java.nio.charset.Charset;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
+/**
+ * The command line entry point, which parses the options and runs the
+ * selected mode, see {@link MigrationOptions}.
+ */
 public class Migrate {
 
-    private static final String VERSION = "-version=";
-    private static final String CHARSET = "-charset=";
-
     public static void main(String[] args) throws Exception {
-        String version = "8.5.2";
-        Charset charset = Charsets.UTF_8;
-        if (args.length > 0) {
-            for (String arg : args) {
-                if (arg.startsWith(VERSION)) {
-                    version = arg.substring(VERSION.length());
-                } else if (arg.startsWith(CHARSET)) {
-                    charset = Charset.forName(arg.substring(CHARSET.length()));
-                }
-            }
+        MigrationOptions options;
+        try {
+            options = MigrationOptions.parse(Arrays.asList(args), null);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(MigrationOptions.USAGE);
+            System.exit(1);
+            return;
+        }
+        if (options.daemon) {
+            runDaemon(options);
+        } else if (!options.mergeReports.isEmpty()) {
+            mergeReports(options);
+        } else if (!options.diffVersions.isEmpty()) {
+            printVersionDiff(options);
+        } else if (!options.projects.isEmpty()) {
+            new MultiProjectMigration(options, System.out).migrate();
+        } else {
+            options.createMigrationTool(new File(".")).migrate();
+        }
+    }
+
+    private static void runDaemon(MigrationOptions options)
+            throws IOException {
+        VadinJarFinder jarFinder = options.getJarFinder();
+        // Standard output is the response stream in daemon mode
+        jarFinder.setOutput(System.err);
+        MigrationDaemon daemon = new MigrationDaemon(jarFinder,
+                options.getCacheDirectory());
+        // Load the index of the default version before the first request
+        daemon.getEngine(options.version);
+        if (options.daemonPort >= 0) {
+            daemon.listen(options.daemonPort,
+                    MigrationEngine.getDefaultCacheDirectory().toPath());
+        } else {
+            daemon.serve(new BufferedReader(
+                    new InputStreamReader(System.in, Charsets.UTF_8)),
+                    System.out);
         }
+    }
+
+    private static void mergeReports(MigrationOptions options)
+            throws IOException {
+        List<Path> partials = new ArrayList<>();
+        for (File partial : options.mergeReports) {
+            partials.add(partial.toPath());
+        }
+        MigrationReport.merge(partials, options.reportFile.toPath());
+        System.out.println("Merged " + partials.size() + " reports to "
+                + options.reportFile);
+    }
 
-        new MigrationTool(version, new File("."), charset).migrate();
+    private static void printVersionDiff(MigrationOptions options)
+            throws IOException {
+        MultiVersionIndex.create(options.diffVersions, options.getJarFinder(),
+                options.getCacheDirectory()).printDiff(System.out);
     }
 }
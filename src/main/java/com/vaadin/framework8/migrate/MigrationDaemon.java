@@ -0,0 +1,258 @@
+package com.vaadin.framework8.migrate;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves migration requests from a long-lived process, so that the JVM is
+ * started and the compatibility jars are indexed only once.
+ * <p>
+ * A request is the project folder followed by the same options as on the
+ * command line, one per line, and ends with an empty line. The response is
+ * the output of the migration, followed by a line with {@code OK} and the
+ * time taken in milliseconds, or {@code ERROR} and a message. The engine of
+ * each version is created on its first request and shared by all later
+ * requests, which only differ in their options, so the options finding the
+ * jars are only accepted when starting the daemon. The jars found and the use
+ * of the cache are printed to the output of the jar finder, which must not be
+ * the response stream. Requests on standard input are served one at a time;
+ * each connection to the local socket is served by its own thread, so
+ * concurrent requests need separate connections.
+ * <p>
+ * Each connection to the local socket starts with a line holding the token
+ * written, readable only by the user running the daemon, to
+ * {@code daemon-<port>.token} in the token directory. Report and patch files
+ * must be inside the project folder, and the requests for one project folder
+ * are migrated one at a time.
+ */
+class MigrationDaemon {
+
+    private final VadinJarFinder jarFinder;
+    private final File cacheDirectory;
+    private final ConcurrentMap<String, MigrationEngine> engines
+            = new ConcurrentHashMap<>();
+    private final ConcurrentMap<File, Object> projectLocks
+            = new ConcurrentHashMap<>();
+
+    /**
+     * @param jarFinder
+     *            the finder used to locate or download the compatibility
+     *            jars of each version, not null
+     * @param cacheDirectory
+     *            the directory where the index of the compatibility classes
+     *            is cached, or null to always scan the jars
+     */
+    MigrationDaemon(VadinJarFinder jarFinder, File cacheDirectory) {
+        this.jarFinder = Objects.requireNonNull(jarFinder);
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * Returns the engine of the given version, creating it on the first call.
+     */
+    MigrationEngine getEngine(String version) throws IOException {
+        try {
+            return engines.computeIfAbsent(version, v -> {
+                try {
+                    return MigrationEngine.create(v, jarFinder,
+                            cacheDirectory);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Serves the requests read from the reader until it ends.
+     */
+    void serve(BufferedReader in, PrintStream out) throws IOException {
+        List<String> request = new ArrayList<>();
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (!line.isEmpty()) {
+                request.add(line);
+            } else if (!request.isEmpty()) {
+                handle(request, out);
+                request.clear();
+            }
+        }
+        if (!request.isEmpty()) {
+            handle(request, out);
+        }
+    }
+
+    /**
+     * Serves the requests read from the reader until it ends, if its first
+     * line is the given token.
+     */
+    void serve(BufferedReader in, PrintStream out, String token)
+            throws IOException {
+        String line = in.readLine();
+        if (line == null
+                || !MessageDigest.isEqual(line.getBytes(StandardCharsets.UTF_8),
+                        token.getBytes(StandardCharsets.UTF_8))) {
+            out.println("ERROR Invalid token");
+            out.flush();
+            return;
+        }
+        serve(in, out);
+    }
+
+    /**
+     * Serves the connections to the given port of the loopback address until
+     * the process is stopped.
+     *
+     * @param port
+     *            the port, or 0 for any free port
+     * @param tokenDirectory
+     *            the directory to write the token of the connections to,
+     *            created when needed
+     */
+    void listen(int port, Path tokenDirectory) throws IOException {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try (ServerSocket server = new ServerSocket(port, 50,
+                InetAddress.getLoopbackAddress())) {
+            Path tokenFile = tokenDirectory
+                    .resolve("daemon-" + server.getLocalPort() + ".token");
+            String token = createToken(tokenFile);
+            System.out.println("Listening on port " + server.getLocalPort()
+                    + ", token in " + tokenFile);
+            while (true) {
+                Socket socket = server.accept();
+                executor.execute(() -> serve(socket, token));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Writes a new random token to the given file, which only the current
+     * user can read, and deletes the file when the process exits.
+     *
+     * @return the token
+     */
+    static String createToken(Path tokenFile) throws IOException {
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder token = new StringBuilder();
+        for (byte b : bytes) {
+            token.append(String.format("%02x", b));
+        }
+        Files.createDirectories(tokenFile.getParent());
+        // A new file, so that nobody else can have it open already
+        Files.deleteIfExists(tokenFile);
+        try {
+            Files.createFile(tokenFile, PosixFilePermissions.asFileAttribute(
+                    PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX file system
+            Files.createFile(tokenFile);
+            File file = tokenFile.toFile();
+            file.setReadable(false, false);
+            file.setReadable(true, true);
+            file.setWritable(false, false);
+            file.setWritable(true, true);
+        }
+        tokenFile.toFile().deleteOnExit();
+        Files.write(tokenFile,
+                token.toString().getBytes(StandardCharsets.UTF_8));
+        return token.toString();
+    }
+
+    private void serve(Socket socket, String token) {
+        try (Socket s = socket;
+                BufferedReader in = new BufferedReader(new InputStreamReader(
+                        s.getInputStream(), StandardCharsets.UTF_8));
+                PrintStream out = new PrintStream(s.getOutputStream(), true,
+                        StandardCharsets.UTF_8.name())) {
+            serve(in, out, token);
+        } catch (IOException e) {
+            System.err.println("Connection failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Migrates the project of the request, writing the response.
+     *
+     * @param request
+     *            the project folder followed by the command line options
+     */
+    void handle(List<String> request, PrintStream out) {
+        long start = System.nanoTime();
+        try {
+            File projectRoot = new File(request.get(0));
+            if (!projectRoot.isDirectory()) {
+                throw new IOException(projectRoot + " is not a directory");
+            }
+            projectRoot = projectRoot.getCanonicalFile();
+            MigrationOptions options = MigrationOptions
+                    .parse(request.subList(1, request.size()), projectRoot);
+            if (options.watch) {
+                throw new IllegalArgumentException(
+                        "Watch mode is not supported in daemon mode");
+            }
+            List<String> engineOptions = options.getEngineOptions();
+            if (!engineOptions.isEmpty()) {
+                throw new IllegalArgumentException("The options "
+                        + engineOptions
+                        + " are given when starting the daemon");
+            }
+            checkInside(projectRoot, options.reportFile);
+            checkInside(projectRoot, options.patchFile);
+            MigrationTool migrationTool = options
+                    .createMigrationTool(projectRoot);
+            migrationTool.setEngine(getEngine(options.version));
+            migrationTool.setOutput(out);
+            // The journal and the temporary files are per project folder
+            synchronized (projectLocks.computeIfAbsent(projectRoot,
+                    root -> new Object())) {
+                migrationTool.migrate();
+            }
+            out.println("OK " + TimeUnit.NANOSECONDS
+                    .toMillis(System.nanoTime() - start));
+        } catch (Exception e) {
+            String message = e.getMessage() != null ? e.getMessage()
+                    : e.toString();
+            out.println("ERROR " + message.replace('\n', ' '));
+        }
+        out.flush();
+    }
+
+    /**
+     * @throws IllegalArgumentException
+     *             if the file is not inside the canonical project folder
+     */
+    private static void checkInside(File projectRoot, File file)
+            throws IOException {
+        if (file != null && !file.getCanonicalFile().toPath()
+                .startsWith(projectRoot.toPath())) {
+            throw new IllegalArgumentException(
+                    file + " is outside of the project folder " + projectRoot);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.vaadin.framework8.migrate;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * The migration rules of one Vaadin Framework 8 version, for embedding the
+ * migration in other tools.
+ * <p>
+ * An engine is built once, which scans the compatibility jars or reads their
+ * cached index, and is immutable after that. Any number of threads can
+ * migrate files with the same engine concurrently, and the engine can be
+ * shared by several {@link MigrationTool} runs with
+ * {@link MigrationTool#setEngine(MigrationEngine)}.
+ */
+public final class MigrationEngine {
+
+    /**
+     * The artifact ids of the compatibility jars, in the order of the
+     * parameters of
+     * {@link #fromJars(String, String, String, String, File)}.
+     */
+    public static final List<String> COMPATIBILITY_MODULES = Collections
+            .unmodifiableList(Arrays.asList("vaadin-compatibility-server",
+                    "vaadin-compatibility-shared",
+                    "vaadin-compatibility-client"));
+
+    private static final String PACKAGE = "com.vaadin.";
+    private static final String V7_PACKAGE = "com.vaadin.v7.";
+
+    private final String version;
+    private final ClassIndex classIndex;
+    private final Map<String, String> specialRenames;
+    private final Map<String, String> renames;
+    private final JavaRewriter javaRewriter;
+    private final DeclarativeRewriter declarativeRewriter;
+
+    MigrationEngine(String version, ClassIndex classIndex) {
+        this.version = Objects.requireNonNull(version);
+        this.classIndex = Objects.requireNonNull(classIndex);
+
+        Map<String, String> special = new HashMap<>();
+        special.put("com.vaadin.data.fieldgroup.PropertyId",
+                "com.vaadin.annotations.PropertyId");
+        special.put("com.vaadin.shared.ui.grid.Range",
+                "com.vaadin.shared.Range");
+        specialRenames = Collections.unmodifiableMap(special);
+
+        renames = new Renames(classIndex.getClasses(), specialRenames);
+
+        Map<String, Set<String>> packages = new HashMap<>();
+        classIndex.getPackages().forEach((name, classes) -> packages.put(
+                name.replace(V7_PACKAGE, PACKAGE), classes));
+        javaRewriter = new JavaRewriter(renames, packages);
+        declarativeRewriter = new DeclarativeRewriter(
+                classIndex.getUiClasses(), version);
+    }
+
+    /**
+     * Creates the engine of the given version, finding the compatibility jars
+     * in the local Maven repository or downloading them, and caching their
+     * index in the default cache directory.
+     */
+    public static MigrationEngine create(String version) throws IOException {
+        return create(version, new VadinJarFinder(),
+                getDefaultCacheDirectory());
+    }
+
+    /**
+     * @return the default directory where the index of the compatibility
+     *         classes is cached: {@code vaadin-framework8-migration-tool} in
+     *         {@code $XDG_CACHE_HOME}, or in {@code ~/.cache} if the variable
+     *         is not set
+     */
+    public static File getDefaultCacheDirectory() {
+        return ClassIndexCache.getDefaultDirectory().toFile();
+    }
+
+    /**
+     * Creates the engine of the given version. The jars found and the use of
+     * the cache are printed to the output of the jar finder.
+     *
+     * @param jarFinder
+     *            the finder used to locate or download the compatibility
+     *            jars, not null
+     * @param cacheDirectory
+     *            the directory where the index of the compatibility classes
+     *            is cached, or null to always scan the jars
+     */
+    public static MigrationEngine create(String version,
+            VadinJarFinder jarFinder, File cacheDirectory)
+            throws IOException {
+        return new MigrationEngine(version,
+                findClassIndex(version, jarFinder, cacheDirectory));
+    }
+
+    /**
+     * Creates the engine of the given version from the given compatibility
+     * jars.
+     *
+     * @param cacheDirectory
+     *            the directory where the index of the compatibility classes
+     *            is cached, or null to always scan the jars
+     */
+    public static MigrationEngine fromJars(String version,
+            String compatServerFilename, String compatSharedFilename,
+            String compatClientFilename, File cacheDirectory)
+            throws IOException {
+        return fromJars(version, compatServerFilename, compatSharedFilename,
+                compatClientFilename, cacheDirectory, System.out);
+    }
+
+    /**
+     * Creates the engine of the given version from the given compatibility
+     * jars.
+     *
+     * @param cacheDirectory
+     *            the directory where the index of the compatibility classes
+     *            is cached, or null to always scan the jars
+     * @param out
+     *            the stream to report the use of the cache to, not null
+     */
+    public static MigrationEngine fromJars(String version,
+            String compatServerFilename, String compatSharedFilename,
+            String compatClientFilename, File cacheDirectory,
+            PrintStream out) throws IOException {
+        return new MigrationEngine(version,
+                indexJars(version, compatServerFilename,
+                        compatSharedFilename, compatClientFilename,
+                        cacheDirectory, out));
+    }
+
+    /**
+     * Finds the compatibility jars of the given version and indexes them, or
+     * reads their cached index.
+     */
+    static ClassIndex findClassIndex(String version, VadinJarFinder jarFinder,
+            File cacheDirectory) throws IOException {
+        List<String> jars = jarFinder.find(COMPATIBILITY_MODULES, version);
+        return indexJars(version, jars.get(0), jars.get(1), jars.get(2),
+                cacheDirectory, jarFinder.getOutput());
+    }
+
+    private static ClassIndex indexJars(String version,
+            String compatServerFilename, String compatSharedFilename,
+            String compatClientFilename, File cacheDirectory,
+            PrintStream out) throws IOException {
+        if (cacheDirectory == null) {
+            return ClassIndex.fromJars(compatServerFilename,
+                    compatSharedFilename, compatClientFilename);
+        }
+        return new ClassIndexCache(cacheDirectory.toPath(), out).get(version,
+                compatServerFilename, compatSharedFilename,
+                compatClientFilename);
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Migrates the contents of a Java file.
+     *
+     * @return the migrated contents, equal to the given contents if nothing
+     *         was rewritten
+     */
+    public String migrateJava(CharSequence javaFile) {
+        return javaRewriter.rewrite(javaFile.toString());
+    }
+
+    /**
+     * Migrates the contents of a declarative HTML file.
+     *
+     * @return the migrated contents, equal to the given contents if nothing
+     *         was rewritten
+     */
+    public String migrateDeclarative(CharSequence htmlFile) {
+        return declarativeRewriter.rewrite(htmlFile.toString());
+    }
+
+    ClassIndex getClassIndex() {
+        return classIndex;
+    }
+
+    /**
+     * @return all renames by the original class name, including the special
+     *         renames which are not overridden by a class rename, as a
+     *         read-only view of the class index
+     */
+    Map<String, String> getRenames() {
+        return renames;
+    }
+
+    Map<String, String> getSpecialRenames() {
+        return specialRenames;
+    }
+
+    JavaRewriter getJavaRewriter() {
+        return javaRewriter;
+    }
+
+    DeclarativeRewriter getDeclarativeRewriter() {
+        return declarativeRewriter;
+    }
+
+    /**
+     * The renames of the compatibility classes, which only differ from the
+     * original class by the {@code v7} package, and of the special classes.
+     * Looking up a name walks the trie of the class index, and the entries
+     * are only built when iterated, so that the names are not kept twice.
+     */
+    private static final class Renames extends AbstractMap<String, String> {
+        private final Set<String> v7Classes;
+        private final Map<String, String> specialRenames;
+
+        private Renames(Set<String> v7Classes,
+                Map<String, String> specialRenames) {
+            this.v7Classes = v7Classes;
+            this.specialRenames = specialRenames;
+        }
+
+        @Override
+        public String get(Object key) {
+            if (!(key instanceof String)) {
+                return null;
+            }
+            String from = (String) key;
+            if (from.startsWith(PACKAGE)) {
+                String v7Class = V7_PACKAGE
+                        + from.substring(PACKAGE.length());
+                // Class renames take precedence over special renames
+                if (v7Classes.contains(v7Class)) {
+                    return v7Class;
+                }
+            }
+            return specialRenames.get(from);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            return new AbstractSet<Entry<String, String>>() {
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    return Stream.concat(v7Classes.stream()
+                            .map(v7Class -> new SimpleImmutableEntry<>(
+                                    PACKAGE + v7Class
+                                            .substring(V7_PACKAGE.length()),
+                                    v7Class)),
+                            getSpecialEntries().stream()).iterator();
+                }
+
+                @Override
+                public int size() {
+                    return v7Classes.size() + getSpecialEntries().size();
+                }
+            };
+        }
+
+        /**
+         * @return the special renames which are not overridden by a class
+         *         rename
+         */
+        private Set<Entry<String, String>> getSpecialEntries() {
+            Map<String, String> special = new HashMap<>(specialRenames);
+            special.keySet().removeIf(from -> v7Classes
+                    .contains(V7_PACKAGE + from.substring(PACKAGE.length())));
+            return special.entrySet();
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.vaadin.framework8.migrate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+
+/**
+ * Remembers the files processed by previous runs, so that an incremental run
+ * can skip the files which have not changed since.
+ * <p>
+ * The manifest is a text file in the project root with one line per file:
+ * size, last modification time, content checksum, the fingerprint of the
+ * rules the file was migrated with, and the path relative to the project
+ * root, separated by tabs. A file is skipped without reading it when its
+ * size and modification time match the manifest and it was migrated with the
+ * same rules, and without rewriting it when only its modification time
+ * changed.
+ */
+class MigrationManifest {
+
+    static final String FILE_NAME = ".vaadin-migration-manifest";
+    private static final String HEADER = "# vaadin-migration-manifest 1";
+
+    private final Path file;
+    private final String fingerprint;
+    private final Map<String, Entry> previous;
+    private final ConcurrentMap<String, Entry> current
+            = new ConcurrentHashMap<>();
+
+    private MigrationManifest(Path file, String fingerprint,
+            Map<String, Entry> previous) {
+        this.file = file;
+        this.fingerprint = fingerprint;
+        this.previous = previous;
+    }
+
+    /**
+     * Reads the manifest of the project, if there is one.
+     *
+     * @param projectRoot
+     *            the project root, not null
+     * @param fingerprint
+     *            the fingerprint of the migration rules of this run, not null
+     * @param full
+     *            true to ignore the entries of previous runs and process all
+     *            files again
+     */
+    static MigrationManifest load(Path projectRoot, String fingerprint,
+            boolean full) throws IOException {
+        return load(projectRoot, FILE_NAME, fingerprint, full);
+    }
+
+    /**
+     * Reads the manifest with the given file name in the project root, e.g.
+     * the manifest of one shard of a run, if there is one.
+     */
+    static MigrationManifest load(Path projectRoot, String fileName,
+            String fingerprint, boolean full) throws IOException {
+        Path file = projectRoot.resolve(fileName);
+        Map<String, Entry> previous = new HashMap<>();
+        if (!full) {
+            try {
+                for (String line : Files.readAllLines(file,
+                        StandardCharsets.UTF_8)) {
+                    Entry entry = Entry.parse(line);
+                    if (entry != null
+                            && entry.fingerprint.equals(fingerprint)) {
+                        previous.put(entry.relativePath, entry);
+                    }
+                }
+            } catch (NoSuchFileException e) {
+                // First incremental run
+            }
+        }
+        return new MigrationManifest(file, Objects.requireNonNull(fingerprint),
+                previous);
+    }
+
+    /**
+     * Computes the fingerprint of the migration rules, which changes when
+     * any of the given parts changes.
+     */
+    static String fingerprint(Collection<String> parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            for (String part : parts) {
+                digest.update(part.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Computes the content checksum of the remaining bytes of the buffer
+     * without changing its position.
+     */
+    static long checksum(ByteBuffer bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes.duplicate());
+        return checksum(bytes.remaining(), crc.getValue());
+    }
+
+    /**
+     * Computes the content checksum of a file, reading it in chunks.
+     */
+    static long checksum(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            CRC32 crc = new CRC32();
+            byte[] chunk = new byte[64 * 1024];
+            long size = 0;
+            int read;
+            while ((read = in.read(chunk)) >= 0) {
+                crc.update(chunk, 0, read);
+                size += read;
+            }
+            return checksum(size, crc.getValue());
+        }
+    }
+
+    /**
+     * Combines the size of the contents with their CRC-32 checksum.
+     */
+    static long checksum(long size, long crc) {
+        return size << 32 ^ crc;
+    }
+
+    /**
+     * Checks whether the file has the same size and modification time as
+     * when it was processed by a previous run with the same rules, and keeps
+     * its entry if so.
+     */
+    boolean isUnchanged(SourceFile f) {
+        Entry entry = previous.get(f.getRelativePath());
+        if (entry != null && entry.size == f.getSize()
+                && entry.lastModified == f.getLastModified()) {
+            current.put(entry.relativePath, entry);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether the file has the same contents as when it was processed
+     * by a previous run with the same rules, and updates its entry if so.
+     */
+    boolean hasSameContents(SourceFile f, long checksum) {
+        Entry entry = previous.get(f.getRelativePath());
+        if (entry != null && entry.checksum == checksum) {
+            record(f.getRelativePath(), f.getSize(), f.getLastModified(),
+                    checksum);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Records a processed file.
+     */
+    void record(String relativePath, long size, long lastModified,
+            long checksum) {
+        current.put(relativePath, new Entry(relativePath, size, lastModified,
+                checksum, fingerprint));
+    }
+
+    /**
+     * Writes the entries recorded during this run, replacing the previous
+     * manifest.
+     */
+    void save() throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temp,
+                StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.newLine();
+            for (Entry entry : new TreeMap<>(current).values()) {
+                out.write(entry.toString());
+                out.newLine();
+            }
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static final class Entry {
+        private final String relativePath;
+        private final long size;
+        private final long lastModified;
+        private final long checksum;
+        private final String fingerprint;
+
+        Entry(String relativePath, long size, long lastModified,
+                long checksum, String fingerprint) {
+            this.relativePath = relativePath;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.checksum = checksum;
+            this.fingerprint = fingerprint;
+        }
+
+        static Entry parse(String line) {
+            if (line.startsWith("#")) {
+                return null;
+            }
+            String[] fields = line.split("\t", 5);
+            if (fields.length != 5) {
+                return null;
+            }
+            try {
+                return new Entry(fields[4], Long.parseLong(fields[0]),
+                        Long.parseLong(fields[1]),
+                        Long.parseUnsignedLong(fields[2], 16), fields[3]);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return size + "\t" + lastModified + "\t"
+                    + Long.toHexString(checksum) + "\t" + fingerprint + "\t"
+                    + relativePath;
+        }
+    }
+}
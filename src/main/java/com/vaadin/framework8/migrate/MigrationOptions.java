@@ -0,0 +1,269 @@
+package com.vaadin.framework8.migrate;
+
+import org.apache.commons.io.Charsets;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The command line options of one migration.
+ */
+final class MigrationOptions {
+
+    private static final String VERSION = "-version=";
+    private static final String CHARSET = "-charset=";
+    private static final String THREADS = "-threads=";
+    private static final String INCLUDE = "-include=";
+    private static final String EXCLUDE = "-exclude=";
+    private static final String NO_GITIGNORE = "-no-gitignore";
+    private static final String NO_CACHE = "-no-cache";
+    private static final String INCREMENTAL = "-incremental";
+    private static final String FULL = "-full";
+    private static final String OFFLINE = "-offline";
+    private static final String JAR_DIR = "-jarDir=";
+    private static final String REPO = "-repo=";
+    private static final String REPORT = "-report=";
+    private static final String DRY_RUN = "-dry-run";
+    private static final String PATCH = "-patch=";
+    private static final String NO_CHARSET_DETECTION = "-no-charset-detection";
+    private static final String WATCH = "-watch";
+    private static final String DAEMON = "-daemon";
+    private static final String DAEMON_PORT = "-daemon=";
+    private static final String PROJECT = "-project=";
+    private static final String DIFF_VERSIONS = "-diff-versions=";
+    private static final String SHARD = "-shard=";
+    private static final String MERGE_REPORTS = "-merge-reports=";
+
+    /**
+     * The options which configure how the compatibility jars are found and
+     * indexed, and thus apply to the engine rather than to a migration.
+     */
+    private static final List<String> ENGINE_OPTIONS = Arrays
+            .asList(NO_CACHE, OFFLINE, JAR_DIR, REPO);
+
+    static final String USAGE = "Usage: java -jar framework8-migration-tool.jar"
+            + " [options]\n"
+            + "  -version=8.5.2           the Vaadin Framework 8 version\n"
+            + "  -charset=cp1252          the charset of the source files\n"
+            + "  -no-charset-detection    use the charset for all files\n"
+            + "  -threads=8               the number of threads, at least 1\n"
+            + "  -include=glob,...        the files to migrate\n"
+            + "  -exclude=glob,...        the files and folders to skip\n"
+            + "  -no-gitignore            also migrate ignored files\n"
+            + "  -incremental, -full      skip unchanged files, or not\n"
+            + "  -jarDir=dir              a folder with compatibility jars\n"
+            + "  -repo=url,...            the repositories to download from\n"
+            + "  -offline                 only use local jars\n"
+            + "  -no-cache                do not cache the class index\n"
+            + "  -report=file.json        write a JSON report\n"
+            + "  -dry-run, -patch=file    only print or write a diff\n"
+            + "  -watch                   migrate changed files until stopped\n"
+            + "  -daemon, -daemon=port    serve requests on stdin or a port\n"
+            + "  -project=dir@version,... migrate several projects\n"
+            + "  -diff-versions=v1,v2,... list the changed classes\n"
+            + "  -shard=i/n               migrate the i-th of n file slices\n"
+            + "  -merge-reports=file,...  merge the reports of the shards";
+
+    String version = "8.5.2";
+    Charset charset = Charsets.UTF_8;
+    int threads = 1;
+    List<String> includes = new ArrayList<>();
+    List<String> excludes = new ArrayList<>();
+    boolean gitIgnore = true;
+    boolean cache = true;
+    boolean incremental = false;
+    boolean full = false;
+    VadinJarFinder jarFinder = new VadinJarFinder();
+    List<String> repositories = new ArrayList<>();
+    File reportFile = null;
+    boolean dryRun = false;
+    File patchFile = null;
+    boolean charsetDetection = true;
+    boolean watch = false;
+    boolean daemon = false;
+    int daemonPort = -1;
+    List<String> projects = new ArrayList<>();
+    List<String> diffVersions = new ArrayList<>();
+    Shard shard = null;
+    List<File> mergeReports = new ArrayList<>();
+    private List<String> args;
+
+    /**
+     * @param baseDirectory
+     *            the directory to resolve relative report and patch files
+     *            against, or null to use the working directory
+     * @throws IllegalArgumentException
+     *             if an option has an invalid value
+     */
+    static MigrationOptions parse(List<String> args, File baseDirectory) {
+        MigrationOptions options = new MigrationOptions();
+        options.args = new ArrayList<>(args);
+        for (String arg : args) {
+            if (arg.startsWith(VERSION)) {
+                options.version = arg.substring(VERSION.length());
+            } else if (arg.startsWith(CHARSET)) {
+                try {
+                    options.charset = Charset
+                            .forName(arg.substring(CHARSET.length()));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException(
+                            "Unsupported charset in " + arg, e);
+                }
+            } else if (arg.startsWith(THREADS)) {
+                options.threads = parseInt(THREADS,
+                        arg.substring(THREADS.length()), 1, Integer.MAX_VALUE,
+                        "a positive number");
+            } else if (arg.startsWith(INCLUDE)) {
+                options.includes.addAll(Arrays.asList(
+                        arg.substring(INCLUDE.length()).split(",")));
+            } else if (arg.startsWith(EXCLUDE)) {
+                options.excludes.addAll(Arrays.asList(
+                        arg.substring(EXCLUDE.length()).split(",")));
+            } else if (arg.equals(NO_GITIGNORE)) {
+                options.gitIgnore = false;
+            } else if (arg.equals(NO_CACHE)) {
+                options.cache = false;
+            } else if (arg.equals(INCREMENTAL)) {
+                options.incremental = true;
+            } else if (arg.equals(FULL)) {
+                options.full = true;
+            } else if (arg.equals(OFFLINE)) {
+                options.jarFinder.setOffline(true);
+            } else if (arg.startsWith(JAR_DIR)) {
+                options.jarFinder.setJarDirectory(
+                        new File(arg.substring(JAR_DIR.length())));
+            } else if (arg.startsWith(REPO)) {
+                options.repositories.addAll(Arrays.asList(
+                        arg.substring(REPO.length()).split(",")));
+            } else if (arg.startsWith(REPORT)) {
+                options.reportFile = resolve(baseDirectory,
+                        arg.substring(REPORT.length()));
+            } else if (arg.equals(DRY_RUN)) {
+                options.dryRun = true;
+            } else if (arg.startsWith(PATCH)) {
+                options.dryRun = true;
+                options.patchFile = resolve(baseDirectory,
+                        arg.substring(PATCH.length()));
+            } else if (arg.equals(NO_CHARSET_DETECTION)) {
+                options.charsetDetection = false;
+            } else if (arg.equals(WATCH)) {
+                options.watch = true;
+            } else if (arg.equals(DAEMON)) {
+                options.daemon = true;
+            } else if (arg.startsWith(DAEMON_PORT)) {
+                options.daemon = true;
+                options.daemonPort = parseInt(DAEMON_PORT,
+                        arg.substring(DAEMON_PORT.length()), 0, 65535,
+                        "a port from 0 to 65535");
+            } else if (arg.startsWith(PROJECT)) {
+                options.projects.addAll(Arrays.asList(
+                        arg.substring(PROJECT.length()).split(",")));
+            } else if (arg.startsWith(SHARD)) {
+                options.shard = Shard.parse(arg.substring(SHARD.length()));
+            } else if (arg.startsWith(MERGE_REPORTS)) {
+                for (String partial : arg
+                        .substring(MERGE_REPORTS.length()).split(",")) {
+                    options.mergeReports.add(resolve(baseDirectory, partial));
+                }
+            } else if (arg.startsWith(DIFF_VERSIONS)) {
+                options.diffVersions.addAll(Arrays.asList(
+                        arg.substring(DIFF_VERSIONS.length()).split(",")));
+            }
+        }
+        if (!options.mergeReports.isEmpty() && options.reportFile == null) {
+            throw new IllegalArgumentException(
+                    "The merged report must be given with " + REPORT);
+        }
+        return options;
+    }
+
+    /**
+     * Parses the value of a numeric option.
+     *
+     * @param expected
+     *            the description of the valid values for the message
+     * @throws IllegalArgumentException
+     *             if the value is not a number between the given bounds,
+     *             inclusive
+     */
+    private static int parseInt(String option, String value, int min,
+            int max, String expected) {
+        try {
+            int number = Integer.parseInt(value);
+            if (number >= min && number <= max) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException(
+                "Invalid option " + option + value + ", expected " + expected);
+    }
+
+    /**
+     * @return the given options which configure how the compatibility jars
+     *         are found and indexed
+     */
+    List<String> getEngineOptions() {
+        List<String> engineOptions = new ArrayList<>();
+        for (String arg : args) {
+            for (String option : ENGINE_OPTIONS) {
+                if (arg.equals(option) || option.endsWith("=")
+                        && arg.startsWith(option)) {
+                    engineOptions.add(arg);
+                }
+            }
+        }
+        return engineOptions;
+    }
+
+    /**
+     * Parses the same options again, resolving relative report and patch
+     * files against the given directory, e.g. for each of several projects.
+     */
+    MigrationOptions withBaseDirectory(File baseDirectory) {
+        return parse(args, baseDirectory);
+    }
+
+    private static File resolve(File baseDirectory, String name) {
+        File file = new File(name);
+        return baseDirectory == null || file.isAbsolute() ? file
+                : new File(baseDirectory, name);
+    }
+
+    VadinJarFinder getJarFinder() {
+        if (!repositories.isEmpty()) {
+            jarFinder.setRepositories(repositories);
+        }
+        return jarFinder;
+    }
+
+    File getCacheDirectory() {
+        return cache ? MigrationEngine.getDefaultCacheDirectory() : null;
+    }
+
+    MigrationTool createMigrationTool(File projectRoot) {
+        MigrationTool migrationTool = new MigrationTool(version,
+                projectRoot, charset);
+        migrationTool.setCharsetDetection(charsetDetection);
+        migrationTool.setThreads(threads);
+        migrationTool.setIncludes(includes);
+        migrationTool.setExcludes(excludes);
+        migrationTool.setGitIgnore(gitIgnore);
+        migrationTool.setJarFinder(getJarFinder());
+        migrationTool.setIncremental(incremental);
+        migrationTool.setFullRescan(full);
+        migrationTool.setReportFile(reportFile);
+        migrationTool.setDryRun(dryRun);
+        migrationTool.setPatchFile(patchFile);
+        migrationTool.setWatch(watch);
+        migrationTool.setCacheDirectory(getCacheDirectory());
+        if (shard != null) {
+            migrationTool.setShard(shard.getIndex(), shard.getCount());
+        }
+        return migrationTool;
+    }
+}
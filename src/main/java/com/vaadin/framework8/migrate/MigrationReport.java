@@ -0,0 +1,317 @@
+package com.vaadin.framework8.migrate;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the metrics of one migration run and writes them as JSON.
+ * <p>
+ * The counters are updated concurrently by the threads migrating the files,
+ * so they are {@link LongAdder}s which do not contend on a single value. The
+ * resolution, index and walk phases are measured as elapsed time; the read,
+ * rewrite and write phases happen per file, so their times are summed over
+ * all threads and can exceed the elapsed time of the run.
+ * <p>
+ * The reports of the shards of a run are merged with
+ * {@link #merge(List, Path)}.
+ */
+class MigrationReport {
+
+    enum Phase {
+        RESOLVE("resolve", true), INDEX("index", true), WALK("walk", true),
+        READ("read", false), REWRITE("rewrite", false), WRITE("write", false);
+
+        private final String key;
+        private final boolean elapsed;
+
+        Phase(String key, boolean elapsed) {
+            this.key = key;
+            this.elapsed = elapsed;
+        }
+    }
+
+    private static final String[] HITS = { "classRenames", "specialRenames",
+            "declarativeTags" };
+
+    private final Map<Phase, LongAdder> nanos = new EnumMap<>(Phase.class);
+
+    final LongAdder javaFiles = new LongAdder();
+    final LongAdder htmlFiles = new LongAdder();
+    final LongAdder skippedFiles = new LongAdder();
+    final LongAdder unchangedFiles = new LongAdder();
+    final LongAdder resumedFiles = new LongAdder();
+    final LongAdder modifiedFiles = new LongAdder();
+    final LongAdder untouchedFiles = new LongAdder();
+    final LongAdder bytesRead = new LongAdder();
+    final LongAdder bytesWritten = new LongAdder();
+
+    private Map<String, Long> classRenames = Collections.emptyMap();
+    private Map<String, Long> specialRenames = Collections.emptyMap();
+    private Map<String, Long> declarativeTags = Collections.emptyMap();
+    private Shard shard;
+
+    MigrationReport() {
+        for (Phase phase : Phase.values()) {
+            nanos.put(phase, new LongAdder());
+        }
+    }
+
+    /**
+     * Adds the time elapsed since the given {@link System#nanoTime()} to the
+     * phase.
+     *
+     * @return the current {@link System#nanoTime()}, for timing the next
+     *         phase
+     */
+    long time(Phase phase, long start) {
+        long now = System.nanoTime();
+        nanos.get(phase).add(now - start);
+        return now;
+    }
+
+    long getMillis(Phase phase) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos.get(phase).sum());
+    }
+
+    /**
+     * Sets the rule hit counts, once all files have been migrated.
+     */
+    void setHits(Map<String, Long> classRenames,
+            Map<String, Long> specialRenames,
+            Map<String, Long> declarativeTags) {
+        this.classRenames = classRenames;
+        this.specialRenames = specialRenames;
+        this.declarativeTags = declarativeTags;
+    }
+
+    /**
+     * Sets the shard this is the report of, or null if all files were
+     * migrated.
+     */
+    void setShard(Shard shard) {
+        this.shard = shard;
+    }
+
+    /**
+     * @return the file counters by their key in the report, in the order
+     *         they are written
+     */
+    private Map<String, LongAdder> getFileCounts() {
+        Map<String, LongAdder> counts = new LinkedHashMap<>();
+        counts.put("java", javaFiles);
+        counts.put("html", htmlFiles);
+        counts.put("modified", modifiedFiles);
+        counts.put("untouched", untouchedFiles);
+        counts.put("skippedWithoutVaadinReferences", skippedFiles);
+        counts.put("unchangedSinceLastRun", unchangedFiles);
+        counts.put("completedByInterruptedRun", resumedFiles);
+        return counts;
+    }
+
+    private Map<String, LongAdder> getByteCounts() {
+        Map<String, LongAdder> counts = new LinkedHashMap<>();
+        counts.put("read", bytesRead);
+        counts.put("written", bytesWritten);
+        return counts;
+    }
+
+    void write(Path file, String version, int threads) throws IOException {
+        try (Writer out = Files.newBufferedWriter(file,
+                StandardCharsets.UTF_8)) {
+            out.write("{\n");
+            out.write("  \"version\": " + quote(version) + ",\n");
+            out.write("  \"threads\": " + threads + ",\n");
+            if (shard != null) {
+                out.write("  \"shard\": " + quote(shard.toString()) + ",\n");
+            }
+            out.write("  \"timingsMillis\": {");
+            String separator = "\n";
+            for (Phase phase : Phase.values()) {
+                out.write(separator + "    " + quote(phase.key) + ": "
+                        + getMillis(phase));
+                separator = ",\n";
+            }
+            out.write("\n  },\n");
+            writeCounts(out, "files", getFileCounts());
+            writeCounts(out, "bytes", getByteCounts());
+            out.write("  \"hits\": {\n");
+            writeHits(out, HITS[0], classRenames, ",");
+            writeHits(out, HITS[1], specialRenames, ",");
+            writeHits(out, HITS[2], declarativeTags, "");
+            out.write("  }\n");
+            out.write("}\n");
+        }
+    }
+
+    private static void writeCounts(Writer out, String name,
+            Map<String, LongAdder> counts) throws IOException {
+        out.write("  " + quote(name) + ": {\n");
+        Iterator<Map.Entry<String, LongAdder>> entries = counts.entrySet()
+                .iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, LongAdder> entry = entries.next();
+            out.write("    " + quote(entry.getKey()) + ": "
+                    + entry.getValue().sum()
+                    + (entries.hasNext() ? ",\n" : "\n"));
+        }
+        out.write("  },\n");
+    }
+
+    private static void writeHits(Writer out, String name,
+            Map<String, Long> hits, String end) throws IOException {
+        out.write("    " + quote(name) + ": {");
+        Iterator<Map.Entry<String, Long>> entries = hits.entrySet()
+                .iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, Long> entry = entries.next();
+            out.write("\n      " + quote(entry.getKey()) + ": "
+                    + entry.getValue() + (entries.hasNext() ? "," : "\n    "));
+        }
+        out.write("}" + end + "\n");
+    }
+
+    /**
+     * Merges the reports of all shards of a run into the report of the whole
+     * run. The file and byte counts and the rule hits are summed, so they are
+     * the same as if all files had been migrated in one run. The times of the
+     * per-file phases and the threads are summed too, while the elapsed
+     * phases take the longest time of any shard, as the shards run in
+     * parallel.
+     *
+     * @throws IOException
+     *             if a report cannot be read, the reports are of different
+     *             versions, or they are not the reports of each shard of one
+     *             run
+     */
+    static void merge(List<Path> partials, Path output) throws IOException {
+        MigrationReport merged = new MigrationReport();
+        Map<Phase, Long> elapsed = new EnumMap<>(Phase.class);
+        Map<String, Map<String, Long>> hits = new LinkedHashMap<>();
+        for (String name : HITS) {
+            hits.put(name, new TreeMap<>());
+        }
+        String version = null;
+        int threads = 0;
+        int count = 0;
+        Set<Integer> shards = new TreeSet<>();
+        for (Path partial : partials) {
+            Map<String, Object> report = getObject(
+                    JsonReader.read(new String(Files.readAllBytes(partial),
+                            StandardCharsets.UTF_8)),
+                    partial + " is not a report");
+            String partialVersion = String.valueOf(report.get("version"));
+            if (version == null) {
+                version = partialVersion;
+            } else if (!version.equals(partialVersion)) {
+                throw new IOException(partial + " is a report of version "
+                        + partialVersion + ", not " + version);
+            }
+            threads += getLong(report, "threads");
+            if (!(report.get("shard") instanceof String)) {
+                throw new IOException(partial + " is not a report of a shard");
+            }
+            Shard shard;
+            try {
+                shard = Shard.parse((String) report.get("shard"));
+            } catch (IllegalArgumentException e) {
+                throw new IOException(partial + ": " + e.getMessage(), e);
+            }
+            if (count != 0 && shard.getCount() != count) {
+                throw new IOException(partial + " is a report of shard "
+                        + shard + ", not of " + count + " shards");
+            }
+            count = shard.getCount();
+            if (!shards.add(shard.getIndex())) {
+                throw new IOException("Shard " + shard + " is reported twice");
+            }
+
+            Map<String, Object> timings = getObject(
+                    report.get("timingsMillis"), "Invalid timings");
+            for (Phase phase : Phase.values()) {
+                long nanos = TimeUnit.MILLISECONDS
+                        .toNanos(getLong(timings, phase.key));
+                if (phase.elapsed) {
+                    elapsed.merge(phase, nanos, Math::max);
+                } else {
+                    merged.nanos.get(phase).add(nanos);
+                }
+            }
+            addCounts(merged.getFileCounts(),
+                    getObject(report.get("files"), "Invalid file counts"));
+            addCounts(merged.getByteCounts(),
+                    getObject(report.get("bytes"), "Invalid byte counts"));
+            Map<String, Object> partialHits = getObject(report.get("hits"),
+                    "Invalid hits");
+            for (String name : HITS) {
+                Map<String, Object> ruleHits = getObject(
+                        partialHits.get(name), "Invalid hits");
+                for (String rule : ruleHits.keySet()) {
+                    hits.get(name).merge(rule, getLong(ruleHits, rule),
+                            Long::sum);
+                }
+            }
+        }
+        if (shards.size() != count) {
+            throw new IOException("Expected the reports of all " + count
+                    + " shards, found the reports of shards " + shards);
+        }
+        elapsed.forEach((phase, nanos) -> merged.nanos.get(phase).add(nanos));
+        merged.setHits(hits.get(HITS[0]), hits.get(HITS[1]),
+                hits.get(HITS[2]));
+        merged.write(output, version, threads);
+    }
+
+    private static void addCounts(Map<String, LongAdder> counts,
+            Map<String, Object> values) throws IOException {
+        for (Map.Entry<String, LongAdder> count : counts.entrySet()) {
+            count.getValue().add(getLong(values, count.getKey()));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> getObject(Object value, String error)
+            throws IOException {
+        if (!(value instanceof Map)) {
+            throw new IOException(error);
+        }
+        return (Map<String, Object>) value;
+    }
+
+    private static long getLong(Map<String, Object> object, String name)
+            throws IOException {
+        Object value = object.get(name);
+        if (!(value instanceof Long)) {
+            throw new IOException("Invalid or missing number " + name);
+        }
+        return (Long) value;
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -1,245 +1,783 @@
 package com.vaadin.framework8.migrate;
 
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
-
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.Enumeration;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
-import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipException;
-import java.util.zip.ZipFile;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import com.vaadin.framework8.migrate.MigrationReport.Phase;
 
 /**
  * @author mavi
  */
 public class MigrationTool {
-    private HashSet<String> serverV7Classes;
-    private Set<String> sharedV7Classes;
-    private Set<String> serverV7UIClasses;
-    private Set<String> clientV7Classes;
-    private Map<String, String> specialRenames;
+    /**
+     * Version of the rewrite rules, to be increased whenever a change in
+     * them makes previous incremental runs obsolete.
+     */
+    private static final String RULES_VERSION = "5";
+    /**
+     * Files up to this size are read into a per-thread buffer that is reused
+     * between files.
+     */
+    private static final int POOLED_BUFFER_LIMIT = 1024 * 1024;
+    /**
+     * Files larger than this are rewritten chunk by chunk instead of being
+     * read into memory, unless the changes are needed for a patch.
+     */
+    private static final int STREAMING_THRESHOLD = POOLED_BUFFER_LIMIT;
+    private static final ThreadLocal<ByteBuffer> readBuffer = ThreadLocal
+            .withInitial(() -> ByteBuffer.allocate(64 * 1024));
+
+    private MigrationEngine engine;
+    private JavaRewriter javaRewriter;
+    private DeclarativeRewriter declarativeRewriter;
     private final String vaadin8Version;
     private final File projectRoot;
     private final Charset charset;
+    private final boolean prefilter;
+    private final boolean asciiCompatible;
+    private boolean charsetDetection = true;
+    private int threads = 1;
+    private List<String> includes = Collections.emptyList();
+    private List<String> excludes = Collections.emptyList();
+    private boolean gitIgnore = true;
+    private File cacheDirectory;
+    /**
+     * The jar finder, or null to create a default one when the jars are
+     * needed, so that the Maven resolver is not loaded if an engine is set.
+     */
+    private VadinJarFinder jarFinder;
+    private boolean incremental;
+    private boolean fullRescan;
+    private File reportFile;
+    private boolean dryRun;
+    private File patchFile;
+    private boolean watch;
+    private Shard shard;
+    private PrintStream out = System.out;
+    /**
+     * The diffs of the modified files in dry-run mode, by relative path.
+     */
+    private ConcurrentMap<String, byte[]> patch;
+    private WriteJournal journal;
+    /**
+     * The files written by the current run in watch mode.
+     */
+    private Queue<SourceFile> written;
+    private RuleHits javaHits;
+    private RuleHits declarativeHits;
 
     public MigrationTool(String vaadin8Version, File projectRoot, Charset charset) {
         this.vaadin8Version = Objects.requireNonNull(vaadin8Version);
         this.projectRoot = Objects.requireNonNull(projectRoot);
         this.charset = Objects.requireNonNull(charset);
+        prefilter = VaadinReferenceFilter.isApplicable(charset);
+        asciiCompatible = JavaRewriter.isAsciiCompatible(charset);
     }
 
-    public void migrate() throws Exception {
-        String version = vaadin8Version;
-        System.out.println("Scanning for compatibility classes for " + version
-                + " version...");
-        String compatServerFilename = VadinJarFinder
-                .get("vaadin-compatibility-server", version);
-        String compatSharedFilename = VadinJarFinder
-                .get("vaadin-compatibility-shared", version);
-        String compatClientFilename = VadinJarFinder
-                .get("vaadin-compatibility-client", version);
-
-        serverV7Classes = new HashSet<>();
-        sharedV7Classes = new HashSet<>();
-        clientV7Classes = new HashSet<>();
-
-        findV7Classes(compatServerFilename, serverV7Classes);
-        findV7Classes(compatSharedFilename, sharedV7Classes);
-        findV7Classes(compatClientFilename, clientV7Classes);
-
-        // This is used in interface and will break more than it fixes
-        clientV7Classes.remove("com.vaadin.v7.client.ComponentConnector");
-
-        serverV7UIClasses = serverV7Classes.stream().filter(
-                cls -> cls.matches("^com\\.vaadin\\.v7\\.ui\\.[^\\.]*$"))
-                .collect(Collectors.toSet());
-
-        System.out.println("Found " + serverV7Classes.size() + "+"
-                + sharedV7Classes.size() + " classes, including "
-                + serverV7UIClasses.size() + " UI classes");
-
-        specialRenames = new HashMap<>();
-        specialRenames.put("com.vaadin.data.fieldgroup.PropertyId",
-                "com.vaadin.annotations.PropertyId");
-        specialRenames.put("com.vaadin.shared.ui.grid.Range",
-                "com.vaadin.shared.Range");
-
-        AtomicInteger javaCount = new AtomicInteger(0);
-        AtomicInteger htmlCount = new AtomicInteger(0);
-        migrateFiles(projectRoot, javaCount, htmlCount, version);
-
-        System.out.println("Scanned " + javaCount.get() + " Java files");
-        System.out.println("Scanned " + htmlCount.get() + " HTML files");
-        System.out.println("Migration complete");
-    }
-
-    private static void findV7Classes(String jarFilename, Set<String> target)
-            throws ZipException, IOException {
-        File serverFile = new File(jarFilename);
-        try (ZipFile jar = new ZipFile(serverFile)) {
-            Enumeration<? extends ZipEntry> entries = jar.entries();
-            while (entries.hasMoreElements()) {
-                ZipEntry entry = entries.nextElement();
-                if (entry.isDirectory()) {
-                    continue;
-                }
-
-                getVaadin7Class(entry).ifPresent(target::add);
-            }
+    /**
+     * Sets the number of threads used to migrate the files. The files are
+     * split into tasks which idle threads steal from each other. Defaults to
+     * 1.
+     *
+     * @param threads
+     *            the number of threads, at least 1
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException(
+                    "Number of threads must be at least 1, was " + threads);
         }
+        this.threads = threads;
+    }
 
+    /**
+     * Sets the globs of the files to migrate, relative to the project root.
+     * If empty (the default), all Java and HTML files are migrated.
+     */
+    public void setIncludes(List<String> includes) {
+        this.includes = new ArrayList<>(includes);
     }
 
-    private void migrateFiles(File directory, AtomicInteger javaCount,
-                                     AtomicInteger htmlCount, String version) throws IOException {
-        assert directory.isDirectory();
+    /**
+     * Sets the globs of the files and directories to skip, relative to the
+     * project root. These are skipped in addition to version control
+     * metadata, {@code node_modules}, generated sources and build output.
+     */
+    public void setExcludes(List<String> excludes) {
+        this.excludes = new ArrayList<>(excludes);
+    }
 
-        for (File f : directory.listFiles()) {
-            if (f.isDirectory()) {
-                migrateFiles(f, javaCount, htmlCount, version);
-            } else if (isJavaFile(f)) {
-                javaCount.incrementAndGet();
-                migrateJava(f);
-            } else if (isDeclarativeFile(f)) {
-                htmlCount.incrementAndGet();
-                migrateDeclarative(f, version);
-            }
+    /**
+     * Sets whether files ignored by the project's {@code .gitignore} files
+     * are skipped. Defaults to true.
+     */
+    public void setGitIgnore(boolean gitIgnore) {
+        this.gitIgnore = gitIgnore;
+    }
+
+    /**
+     * Sets the directory where the index of the compatibility classes of
+     * each version is cached between runs, or null to always scan the
+     * compatibility jars. Not set by default; the command line caches the
+     * index in {@code ~/.cache/vaadin-framework8-migration-tool} unless
+     * {@code -no-cache} is given.
+     */
+    public void setCacheDirectory(File cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    /**
+     * Sets the engine to migrate the files with, e.g. one shared by several
+     * projects, instead of creating one for this run from the compatibility
+     * jars. The engine must be of the same version as this tool. Not set by
+     * default.
+     */
+    public void setEngine(MigrationEngine engine) {
+        if (engine != null && !engine.getVersion().equals(vaadin8Version)) {
+            throw new IllegalArgumentException("Engine is for version "
+                    + engine.getVersion() + ", not " + vaadin8Version);
         }
+        this.engine = engine;
     }
 
-    private static boolean isJavaFile(File f) {
-        return f.getName().endsWith(".java");
+    /**
+     * Sets whether the tool keeps running after migrating the project, and
+     * migrates the Java and declarative files again whenever they are
+     * created or changed, until the thread is interrupted. Changes made in
+     * quick succession are migrated together, and the changes written by the
+     * tool itself are ignored. In dry-run mode, the changes of each batch are
+     * written to the output. Defaults to false.
+     */
+    public void setWatch(boolean watch) {
+        this.watch = watch;
     }
 
-    private static boolean isDeclarativeFile(File f) {
-        return f.getName().endsWith(".html");
+    /**
+     * Sets the stream to print the progress and, in dry-run mode without a
+     * patch file, the changes to. Defaults to {@link System#out}.
+     */
+    public void setOutput(PrintStream out) {
+        this.out = Objects.requireNonNull(out);
+    }
+
+    /**
+     * Sets the finder used to locate or download the compatibility jars,
+     * which controls the repositories and offline mode. Not used if an engine
+     * is set. Defaults to a finder using the local Maven repository and the
+     * default remote repositories.
+     */
+    public void setJarFinder(VadinJarFinder jarFinder) {
+        this.jarFinder = Objects.requireNonNull(jarFinder);
+    }
+
+    /**
+     * Sets whether the charset of each file is detected: files with a byte
+     * order mark are decoded accordingly, and other files are decoded as
+     * UTF-8 if they are valid UTF-8, and with the configured charset
+     * otherwise. Each file is written back in the charset it was read in,
+     * keeping its byte order mark. If disabled, Java files are always decoded
+     * with the configured charset, and declarative files as UTF-8. Defaults
+     * to true.
+     */
+    public void setCharsetDetection(boolean charsetDetection) {
+        this.charsetDetection = charsetDetection;
+    }
+
+    /**
+     * Sets whether files which have not changed since they were processed by
+     * a previous incremental run with the same version and rules are
+     * skipped. The processed files are recorded in
+     * {@value MigrationManifest#FILE_NAME} in the project root. Defaults to
+     * false.
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    /**
+     * Sets whether an incremental run processes all files again, only
+     * rebuilding the manifest. Defaults to false.
+     */
+    public void setFullRescan(boolean fullRescan) {
+        this.fullRescan = fullRescan;
+    }
+
+    /**
+     * Sets the file to write a JSON report of the run to: the time spent in
+     * each phase, the number of files and bytes read and written, and how
+     * many times each rename was applied. Not written by default.
+     */
+    public void setReportFile(File reportFile) {
+        this.reportFile = reportFile;
     }
 
-    private static Optional<String> getVaadin7Class(ZipEntry entry) {
-        String name = entry.getName();
-        if (name.startsWith("com/vaadin/v7") && name.endsWith(".class")) {
-            name = name.replace('/', '.');
-            name = name.replace('$', '.');
-            name = name.replace(".class", "");
-            return Optional.of(name);
+    /**
+     * Sets whether the files are left untouched, and the changes are written
+     * as a unified diff instead, to the patch file or to the standard output
+     * if no patch file is set. The incremental manifest is not updated
+     * either. Files in charsets which are not ASCII-compatible are left out
+     * of the diff, as it could not be applied. Defaults to false.
+     */
+    public void setDryRun(boolean dryRun) {
+        this.dryRun = dryRun;
+    }
+
+    /**
+     * Sets the file to write the unified diff to in dry-run mode, or null to
+     * write it to the standard output. Not set by default.
+     */
+    public void setPatchFile(File patchFile) {
+        this.patchFile = patchFile;
+    }
+
+    /**
+     * Sets the shard of the files to migrate, for splitting a large project
+     * between several runs, e.g. on different machines. Each shard migrates
+     * only the files selected by the hash of their relative path, and keeps
+     * its own journal and manifest. The reports of all shards can be merged
+     * into the totals of the whole project. Not set by default, which
+     * migrates all files.
+     *
+     * @param index
+     *            the number of the shard, from 1 to the number of shards
+     */
+    public void setShard(int index, int count) {
+        shard = new Shard(index, count);
+    }
+
+    public void migrate() throws Exception {
+        String version = vaadin8Version;
+        MigrationReport report = new MigrationReport();
+        MigrationEngine engine = this.engine;
+        if (engine == null) {
+            long start = System.nanoTime();
+            out.println("Scanning for compatibility classes for "
+                    + version + " version...");
+            VadinJarFinder finder = jarFinder != null ? jarFinder
+                    : new VadinJarFinder();
+            List<String> compatFilenames = finder.find(
+                    MigrationEngine.COMPATIBILITY_MODULES, version, out);
+            start = report.time(Phase.RESOLVE, start);
+            engine = MigrationEngine.fromJars(version, compatFilenames.get(0),
+                    compatFilenames.get(1), compatFilenames.get(2),
+                    cacheDirectory, out);
+            report.time(Phase.INDEX, start);
+        }
+
+        ClassIndex classIndex = engine.getClassIndex();
+        out.println("Found " + classIndex.getServerClasses().size()
+                + "+" + classIndex.getSharedClasses().size()
+                + " classes, including " + classIndex.getUiClasses().size()
+                + " UI classes");
+
+        javaRewriter = engine.getJavaRewriter();
+        declarativeRewriter = engine.getDeclarativeRewriter();
+        javaHits = reportFile != null ? new RuleHits() : null;
+        declarativeHits = reportFile != null ? new RuleHits() : null;
+
+        MigrationManifest manifest = null;
+        if (incremental) {
+            manifest = MigrationManifest.load(projectRoot.toPath(),
+                    MigrationManifest.FILE_NAME + getFileSuffix(),
+                    MigrationManifest.fingerprint(getRuleParts(engine)),
+                    fullRescan);
         }
 
-        return Optional.empty();
+        SourceWalker walker = new SourceWalker(projectRoot.toPath(), includes,
+                excludes, gitIgnore);
+        SourceWatcher watcher = watch
+                ? new SourceWatcher(walker, projectRoot.toPath())
+                : null;
+        try {
+            long start = System.nanoTime();
+            List<SourceFile> files = selectShard(
+                    watcher != null ? watcher.start() : walker.walk());
+            report.time(Phase.WALK, start);
+            migrateFiles(files, report, manifest, engine, watcher);
+            printSummary(report, manifest, engine);
+            if (watcher != null) {
+                watch(watcher, manifest, engine);
+            }
+        } finally {
+            if (watcher != null) {
+                watcher.close();
+            }
+        }
     }
 
-    private void migrateJava(File f) throws IOException {
-        String javaFile = IOUtils.toString(f.toURI(), charset);
-        String migratedFile = modifyJava(javaFile);
-        if (!javaFile.equals(migratedFile)) {
-            FileUtils.write(f, migratedFile, charset);
+    private List<SourceFile> selectShard(List<SourceFile> files) {
+        if (shard == null) {
+            return files;
         }
+        return files.stream().filter(shard::contains)
+                .collect(Collectors.toList());
+    }
+
+    private String getFileSuffix() {
+        return shard != null ? shard.getFileSuffix() : "";
     }
 
-    private void migrateDeclarative(File f, String version)
+    private void printSummary(MigrationReport report,
+            MigrationManifest manifest, MigrationEngine engine)
             throws IOException {
-        String htmlFile = IOUtils.toString(f.toURI(), StandardCharsets.UTF_8);
-        final String migratedFile = modifyDeclarative(htmlFile, version);
-        if (!htmlFile.equals(migratedFile)) {
-            IOUtils.write(migratedFile, new FileOutputStream(f), StandardCharsets.UTF_8);
+        out.println("Scanned " + report.javaFiles.sum() + " Java files");
+        out.println("Skipped " + report.skippedFiles.sum()
+                + " Java files without Vaadin references");
+        out.println("Scanned " + report.htmlFiles.sum() + " HTML files");
+        if (manifest != null) {
+            out.println("Skipped " + report.unchangedFiles.sum()
+                    + " files unchanged since the last run");
+        }
+        if (reportFile != null) {
+            writeReport(report, engine);
+            out.println("Wrote report to " + reportFile);
+        }
+        if (dryRun && patchFile != null) {
+            try (OutputStream patchOut = Files
+                    .newOutputStream(patchFile.toPath())) {
+                writePatch(patchOut);
+            }
+            out.println("Wrote changes to " + patch.size()
+                    + " files to " + patchFile);
+        }
+        out.println("Migration complete");
+        if (dryRun && patchFile == null) {
+            writePatch(out);
+            out.flush();
         }
     }
 
-    private String modifyJava(String javaFile) {
-        for (String v7Class : Stream
-                .concat(Stream.concat(serverV7Classes.stream(),
-                        sharedV7Classes.stream()), clientV7Classes.stream())
-                .collect(Collectors.toList())) {
-
-            String comvaadinClass = v7Class.replace("com.vaadin.v7.",
-                    "com.vaadin.");
-            javaFile = performReplacement(javaFile, comvaadinClass, v7Class);
+    /**
+     * Migrates the changed files until the thread is interrupted.
+     */
+    private void watch(SourceWatcher watcher, MigrationManifest manifest,
+            MigrationEngine engine) throws IOException {
+        out.println("Watching " + projectRoot + " for changes");
+        out.flush();
+        while (true) {
+            List<SourceFile> files;
+            try {
+                files = selectShard(watcher.awaitChanges());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            MigrationReport report = new MigrationReport();
+            migrateFiles(files, report, manifest, engine, watcher);
+            out.println("Migrated " + report.modifiedFiles.sum() + " of "
+                    + files.size() + " changed files");
+            if (dryRun) {
+                writePatch(out);
+            }
+            out.flush();
         }
+    }
 
-        for (Map.Entry<String, String> rename : specialRenames.entrySet()) {
-            javaFile = performReplacement(javaFile, rename.getKey(),
-                    rename.getValue());
+    private void writePatch(OutputStream out) throws IOException {
+        for (byte[] diff : patch.values()) {
+            out.write(diff);
         }
+    }
 
-        return javaFile;
+    private void writeReport(MigrationReport report, MigrationEngine engine)
+            throws IOException {
+        Map<String, String> renames = engine.getRenames();
+        Map<String, Long> classRenames = new TreeMap<>();
+        Map<String, Long> specialRenameHits = new TreeMap<>();
+        javaHits.get().forEach((from, hits) -> {
+            // Class renames take precedence over special renames
+            String to = engine.getSpecialRenames().get(from);
+            if (to != null && to.equals(renames.get(from))) {
+                specialRenameHits.put(from, hits);
+            } else {
+                classRenames.put(from, hits);
+            }
+        });
+        report.setHits(classRenames, specialRenameHits,
+                declarativeHits.get());
+        report.setShard(shard);
+        report.write(reportFile.toPath(), vaadin8Version, threads);
     }
 
-    private static String performReplacement(String javaFile,
-                                             String comvaadinClass, String v7Class) {
-        javaFile = javaFile.replace("import " + comvaadinClass + ";",
-                "import " + v7Class + ";");
-        javaFile = javaFile.replace("extends " + comvaadinClass + " ",
-                "extends " + v7Class + " ");
-        javaFile = javaFile.replace("implements " + comvaadinClass + " ",
-                "implements " + v7Class + " ");
-        javaFile = javaFile.replace("throws " + comvaadinClass + " ",
-                "throws " + v7Class + " ");
-        return javaFile;
+    /**
+     * Returns everything the result of migrating a file depends on, for
+     * detecting files migrated with the same rules in incremental mode.
+     */
+    private List<String> getRuleParts(MigrationEngine engine) {
+        List<String> parts = new ArrayList<>();
+        parts.add(RULES_VERSION);
+        parts.add(vaadin8Version);
+        parts.add(charset.name());
+        parts.add(charsetDetection ? "detect" : "configured");
+        new TreeMap<>(engine.getRenames()).forEach(
+                (from, to) -> parts.add(from + "=" + to));
+        parts.addAll(new TreeSet<>(engine.getClassIndex().getUiClasses()));
+        return parts;
     }
 
-    private String modifyDeclarative(String htmlFile, String version) {
-        for (String v7Class : serverV7UIClasses) {
-            String simpleClassName = v7Class
-                    .substring(v7Class.lastIndexOf('.') + 1);
-            String tagName = classNameToElementName(simpleClassName);
+    /**
+     * Migrates the files, writing them through the journal and updating the
+     * manifest, or collecting their changes in dry-run mode.
+     *
+     * @param watcher
+     *            the watcher to record the written files with, or null
+     */
+    private void migrateFiles(List<SourceFile> files, MigrationReport report,
+            MigrationManifest manifest, MigrationEngine engine,
+            SourceWatcher watcher) throws IOException {
+        patch = dryRun ? new ConcurrentSkipListMap<>() : null;
+        if (dryRun) {
+            migrateFiles(files, report, manifest);
+            return;
+        }
+        written = watcher != null ? new ConcurrentLinkedQueue<>() : null;
+        journal = WriteJournal.open(projectRoot.toPath(),
+                WriteJournal.FILE_NAME + getFileSuffix(),
+                MigrationManifest.fingerprint(getRuleParts(engine)));
+        try {
+            if (journal.getResumedCount() > 0) {
+                out.println("Resuming an interrupted run, "
+                        + journal.getResumedCount()
+                        + " files already migrated");
+            }
+            migrateFiles(files, report, manifest);
+            journal.finish();
+        } finally {
+            journal.close();
+            journal = null;
+        }
+        if (manifest != null) {
+            manifest.save();
+        }
+        if (watcher != null) {
+            watcher.recordOwnWrites(written);
+            written = null;
+        }
+    }
+
+    private void migrateFiles(List<SourceFile> files, MigrationReport report,
+            MigrationManifest manifest) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new MigrateFilesTask(files, 0, files.size(),
+                    report, manifest));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Migrates a range of files, splitting it in halves until it is small
+     * enough so that idle threads can steal the other half.
+     */
+    private class MigrateFilesTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private static final int THRESHOLD = 8;
+
+        private final List<SourceFile> files;
+        private final int from;
+        private final int to;
+        private final MigrationReport report;
+        private final MigrationManifest manifest;
+
+        MigrateFilesTask(List<SourceFile> files, int from, int to,
+                MigrationReport report, MigrationManifest manifest) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+            this.report = report;
+            this.manifest = manifest;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(
+                        new MigrateFilesTask(files, from, middle, report,
+                                manifest),
+                        new MigrateFilesTask(files, middle, to, report,
+                                manifest));
+                return;
+            }
+            try {
+                for (SourceFile f : files.subList(from, to)) {
+                    if (f.isJava()) {
+                        report.javaFiles.increment();
+                    } else if (f.isDeclarative()) {
+                        report.htmlFiles.increment();
+                    } else {
+                        continue;
+                    }
+                    if (journal != null && journal.isCompleted(f)) {
+                        report.resumedFiles.increment();
+                    } else if (manifest != null && manifest.isUnchanged(f)) {
+                        report.unchangedFiles.increment();
+                        report.untouchedFiles.increment();
+                    } else if (f.getSize() > STREAMING_THRESHOLD
+                            && patch == null
+                            && migrateStreaming(f, report, manifest)) {
+                        continue;
+                    } else if (f.isJava()) {
+                        migrateJava(f, report, manifest);
+                    } else {
+                        migrateDeclarative(f, report, manifest);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
 
-            String legacyStartTag = "<v-" + tagName + ">";
-            String legacyStartTag2 = "<v-" + tagName + " ";
-            String startTag = "<vaadin-" + tagName + ">";
-            String startTag2 = "<vaadin-" + tagName + " ";
-            String newStartTag = "<vaadin7-" + tagName + ">";
-            String newStartTag2 = "<vaadin7-" + tagName + " ";
-            String legacyEndTag = "</v-" + tagName + ">";
-            String endTag = "</vaadin-" + tagName + ">";
-            String newEndTag = "</vaadin7-" + tagName + ">";
+    private void migrateJava(SourceFile f, MigrationReport report,
+            MigrationManifest manifest) throws IOException {
+        long start = System.nanoTime();
+        ByteBuffer bytes = read(f.getPath());
+        report.bytesRead.add(bytes.remaining());
+        start = report.time(Phase.READ, start);
+        long checksum = 0;
+        if (manifest != null) {
+            checksum = MigrationManifest.checksum(bytes);
+            if (manifest.hasSameContents(f, checksum)) {
+                report.unchangedFiles.increment();
+                report.untouchedFiles.increment();
+                return;
+            }
+        }
+        Charset fileCharset = charset;
+        if (charsetDetection) {
+            fileCharset = CharsetDetector.detect(bytes, charset,
+                    asciiCompatible);
+        }
+        boolean canPrefilter = fileCharset.equals(charset) ? prefilter
+                : VaadinReferenceFilter.isApplicable(fileCharset);
+        if (canPrefilter
+                && !VaadinReferenceFilter.mayReferenceVaadin(bytes)) {
+            report.skippedFiles.increment();
+            report.untouchedFiles.increment();
+            recordUnmodified(f, manifest, checksum);
+            return;
+        }
+        String javaFile = fileCharset.decode(bytes).toString();
+        String migratedFile = modifyJava(javaFile);
+        start = report.time(Phase.REWRITE, start);
+        if (!javaFile.equals(migratedFile)) {
+            write(f, javaFile, migratedFile, fileCharset, report, manifest);
+            report.time(Phase.WRITE, start);
+        } else {
+            report.untouchedFiles.increment();
+            recordUnmodified(f, manifest, checksum);
+        }
+    }
 
-            htmlFile = htmlFile.replace(legacyStartTag, newStartTag);
-            htmlFile = htmlFile.replace(startTag, newStartTag);
-            htmlFile = htmlFile.replace(legacyStartTag2, newStartTag2);
-            htmlFile = htmlFile.replace(startTag2, newStartTag2);
+    private void migrateDeclarative(SourceFile f, MigrationReport report,
+            MigrationManifest manifest) throws IOException {
+        long start = System.nanoTime();
+        ByteBuffer bytes = read(f.getPath());
+        report.bytesRead.add(bytes.remaining());
+        start = report.time(Phase.READ, start);
+        long checksum = 0;
+        if (manifest != null) {
+            checksum = MigrationManifest.checksum(bytes);
+            if (manifest.hasSameContents(f, checksum)) {
+                report.unchangedFiles.increment();
+                report.untouchedFiles.increment();
+                return;
+            }
+        }
+        Charset fileCharset = StandardCharsets.UTF_8;
+        if (charsetDetection) {
+            fileCharset = CharsetDetector.detect(bytes, charset, true);
+        }
+        String htmlFile = fileCharset.decode(bytes).toString();
+        final String migratedFile = modifyDeclarative(htmlFile);
+        start = report.time(Phase.REWRITE, start);
+        if (!htmlFile.equals(migratedFile)) {
+            write(f, htmlFile, migratedFile, fileCharset, report, manifest);
+            report.time(Phase.WRITE, start);
+        } else {
+            report.untouchedFiles.increment();
+            recordUnmodified(f, manifest, checksum);
+        }
+    }
 
-            htmlFile = htmlFile.replace(legacyEndTag, newEndTag);
-            htmlFile = htmlFile.replace(endTag, newEndTag);
+    /**
+     * Migrates a large file chunk by chunk, directly into its temporary file,
+     * so that memory use does not depend on the size of the file. The time
+     * spent reading and writing is included in the rewrite time.
+     *
+     * @return false if the file is not in an ASCII-compatible charset and
+     *         has to be migrated in memory
+     */
+    private boolean migrateStreaming(SourceFile f, MigrationReport report,
+            MigrationManifest manifest) throws IOException {
+        long start = System.nanoTime();
+        Charset fileCharset = f.isJava() ? charset : StandardCharsets.UTF_8;
+        if (charsetDetection) {
+            // Java files are rewritten as bytes, so any ASCII-compatible
+            // charset will do, and only the byte order mark matters
+            fileCharset = CharsetDetector.detect(f.getPath(), charset,
+                    f.isDeclarative());
+        }
+        if (fileCharset.equals(charset) ? !asciiCompatible
+                : !JavaRewriter.isAsciiCompatible(fileCharset)) {
+            return false;
+        }
+        long checksum = 0;
+        if (manifest != null) {
+            checksum = MigrationManifest.checksum(f.getPath());
+            if (manifest.hasSameContents(f, checksum)) {
+                report.unchangedFiles.increment();
+                report.untouchedFiles.increment();
+                return true;
+            }
+        }
+        Path temp = journal.getTempFile(f);
+        CRC32 crc = new CRC32();
+        boolean rewritten;
+        try (FileChannel in = FileChannel.open(f.getPath(),
+                StandardOpenOption.READ);
+                CheckedOutputStream out = new CheckedOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(temp)),
+                        crc)) {
+            if (f.isJava()) {
+                rewritten = javaRewriter.rewrite(in, out, readBuffer.get(),
+                        javaHits);
+            } else {
+                rewritten = declarativeRewriter.rewrite(in, out,
+                        readBuffer.get(), fileCharset, declarativeHits);
+            }
+        }
+        report.bytesRead.add(f.getSize());
+        report.time(Phase.REWRITE, start);
+        if (rewritten) {
+            BasicFileAttributes attributes = journal.replaceLater(f);
+            if (written != null) {
+                written.add(f);
+            }
+            report.bytesWritten.add(attributes.size());
+            report.modifiedFiles.increment();
+            if (manifest != null) {
+                manifest.record(f.getRelativePath(), attributes.size(),
+                        attributes.lastModifiedTime().toMillis(),
+                        MigrationManifest.checksum(attributes.size(),
+                                crc.getValue()));
+            }
+        } else {
+            Files.delete(temp);
+            report.untouchedFiles.increment();
+            recordUnmodified(f, manifest, checksum);
+        }
+        return true;
+    }
 
-            // Version
-            htmlFile = htmlFile.replaceAll(
-                    "<meta(.*)name=\"vaadin-version\"(.*)content=\"7.*\"(.*)>",
-                    "<meta name=\"vaadin-version\" content=\"" + version
-                            + "\">");
+    private void recordUnmodified(SourceFile f, MigrationManifest manifest,
+            long checksum) throws IOException {
+        if (journal != null) {
+            journal.completed(f);
+        }
+        if (manifest != null) {
+            manifest.record(f.getRelativePath(), f.getSize(),
+                    f.getLastModified(), checksum);
         }
+    }
 
-        return htmlFile;
+    private void write(SourceFile f, String original, String migrated,
+            Charset fileCharset, MigrationReport report,
+            MigrationManifest manifest) throws IOException {
+        if (patch != null) {
+            if (!JavaRewriter.isAsciiCompatible(fileCharset)) {
+                // git apply splits the patch into lines by the byte 0x0A
+                out.println("Not including " + f.getRelativePath() + " in "
+                        + "the patch, as its charset " + fileCharset
+                        + " is not ASCII-compatible");
+                return;
+            }
+            // The diff is encoded like the file so that it applies cleanly
+            patch.put(f.getRelativePath(), UnifiedDiff
+                    .diff(f.getRelativePath(), original, migrated)
+                    .getBytes(fileCharset));
+            report.modifiedFiles.increment();
+            return;
+        }
+        byte[] contents = migrated.getBytes(fileCharset);
+        BasicFileAttributes attributes = journal.write(f, contents);
+        if (written != null) {
+            written.add(f);
+        }
+        report.bytesWritten.add(contents.length);
+        report.modifiedFiles.increment();
+        if (manifest != null) {
+            manifest.record(f.getRelativePath(), attributes.size(),
+                    attributes.lastModifiedTime().toMillis(),
+                    MigrationManifest.checksum(ByteBuffer.wrap(contents)));
+        }
     }
 
     /**
-     * From Design.java
+     * Reads the whole file into a buffer which is only valid until the next
+     * call from the same thread.
      */
-    private static String classNameToElementName(String className) {
-        StringBuilder result = new StringBuilder();
-        for (int i = 0; i < className.length(); i++) {
-            char c = className.charAt(i);
-            if (Character.isUpperCase(c)) {
-                if (i > 0) {
-                    result.append("-");
+    private static ByteBuffer read(Path f) throws IOException {
+        try (FileChannel channel = FileChannel.open(f,
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(f + " is too large");
+            }
+            ByteBuffer buffer = readBuffer.get();
+            if (buffer.capacity() < size) {
+                buffer = ByteBuffer.allocate((int) size);
+                if (size <= POOLED_BUFFER_LIMIT) {
+                    readBuffer.set(buffer);
                 }
-                result.append(Character.toLowerCase(c));
-            } else {
-                result.append(c);
             }
+            buffer.clear();
+            buffer.limit((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // read until the buffer is full or the file ends
+            }
+            buffer.flip();
+            return buffer;
         }
-        return result.toString();
     }
 
+    private String modifyJava(String javaFile) {
+        return javaRewriter.rewrite(javaFile, javaHits);
+    }
+
+    private String modifyDeclarative(String htmlFile) {
+        return declarativeRewriter.rewrite(htmlFile, declarativeHits);
+    }
 }
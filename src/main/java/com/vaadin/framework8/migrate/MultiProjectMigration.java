@@ -0,0 +1,83 @@
+package com.vaadin.framework8.migrate;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+/**
+ * Migrates several projects in one run, each against its own version, given
+ * as {@code dir@version}. All versions are indexed concurrently before the
+ * first project is migrated.
+ */
+final class MultiProjectMigration {
+
+    private final MigrationOptions options;
+    private final PrintStream out;
+
+    /**
+     * @param options
+     *            the options of the run, which apply to each project, not
+     *            null
+     */
+    MultiProjectMigration(MigrationOptions options, PrintStream out) {
+        this.options = options;
+        this.out = out;
+    }
+
+    void migrate() throws Exception {
+        if (options.watch) {
+            throw new IllegalArgumentException(
+                    "Watch mode is not supported for several projects");
+        }
+        Map<File, String> projects = getProjects();
+        out.println("Indexing the compatibility jars of "
+                + new LinkedHashSet<>(projects.values()));
+        Map<String, MigrationEngine> engines = MultiVersionIndex
+                .create(projects.values(), options.getJarFinder(),
+                        options.getCacheDirectory())
+                .createEngines();
+        for (Map.Entry<File, String> project : projects.entrySet()) {
+            out.println("Migrating " + project.getKey() + " to "
+                    + project.getValue());
+            // Relative report and patch files are written to each project
+            MigrationOptions projectOptions = options
+                    .withBaseDirectory(project.getKey());
+            projectOptions.version = project.getValue();
+            MigrationTool migrationTool = projectOptions
+                    .createMigrationTool(project.getKey());
+            migrationTool.setEngine(engines.get(project.getValue()));
+            migrationTool.migrate();
+        }
+    }
+
+    /**
+     * @return the version of each project by its canonical folder
+     * @throws IllegalArgumentException
+     *             if a folder is given more than once, also as a different
+     *             path to the same folder
+     */
+    Map<File, String> getProjects() throws IOException {
+        Map<File, String> projects = new LinkedHashMap<>();
+        for (String project : options.projects) {
+            int at = project.lastIndexOf('@');
+            String version = at < 0 ? options.version
+                    : project.substring(at + 1);
+            File projectRoot = new File(
+                    at < 0 ? project : project.substring(0, at));
+            if (!projectRoot.isDirectory()) {
+                throw new IOException(projectRoot + " is not a directory");
+            }
+            projectRoot = projectRoot.getCanonicalFile();
+            String previous = projects.putIfAbsent(projectRoot, version);
+            if (previous != null) {
+                throw new IllegalArgumentException("The project "
+                        + projectRoot + " is given more than once, for "
+                        + previous + " and " + version);
+            }
+        }
+        return projects;
+    }
+}
@@ -0,0 +1,192 @@
+package com.vaadin.framework8.migrate;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The class indexes of several Vaadin Framework 8 versions, for migrating
+ * projects of different versions in one process.
+ * <p>
+ * The indexes share one {@link ClassNameTrie}, each using
+ * {@link ClassIndex#BITS} bits of the masks, so the classes found in several
+ * versions are stored only once and at most {@link #MAX_VERSIONS} versions
+ * fit. The classes added or removed between two versions are found in one
+ * pass over the trie. The index is immutable once created.
+ */
+final class MultiVersionIndex {
+
+    static final int MAX_VERSIONS = Integer.SIZE / ClassIndex.BITS;
+
+    private final ClassNameTrie names = new ClassNameTrie();
+    private final Map<String, ClassIndex> indexes = new LinkedHashMap<>();
+    private final Map<String, Integer> shifts = new LinkedHashMap<>();
+
+    /**
+     * Copies the given indexes into a shared trie.
+     *
+     * @param indexes
+     *            the index of each version, in the order of the versions
+     */
+    MultiVersionIndex(Map<String, ClassIndex> indexes) {
+        if (indexes.size() > MAX_VERSIONS) {
+            throw new IllegalArgumentException("At most " + MAX_VERSIONS
+                    + " versions can be indexed together, not "
+                    + indexes.size());
+        }
+        indexes.forEach((version, index) -> {
+            int shift = shifts.size() * ClassIndex.BITS;
+            shifts.put(version, shift);
+            this.indexes.put(version,
+                    new ClassIndex(names, shift, index.getServerClasses(),
+                            index.getSharedClasses(),
+                            index.getClientClasses()));
+        });
+        names.trim();
+    }
+
+    /**
+     * Indexes the compatibility jars of the given versions concurrently,
+     * finding or downloading the jars of each version and reading their
+     * cached index if there is one.
+     *
+     * @param cacheDirectory
+     *            the directory where the index of the compatibility classes
+     *            is cached, or null to always scan the jars
+     */
+    static MultiVersionIndex create(Collection<String> versions,
+            VadinJarFinder jarFinder, File cacheDirectory) throws IOException {
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(versions));
+        if (distinct.size() > MAX_VERSIONS) {
+            throw new IllegalArgumentException("At most " + MAX_VERSIONS
+                    + " versions can be indexed together, not "
+                    + distinct.size());
+        }
+        Map<String, ClassIndex> indexes = new LinkedHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1,
+                Math.min(distinct.size(),
+                        Runtime.getRuntime().availableProcessors())));
+        try {
+            List<CompletableFuture<ClassIndex>> loads = new ArrayList<>();
+            for (String version : distinct) {
+                loads.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return MigrationEngine.findClassIndex(version,
+                                jarFinder, cacheDirectory);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, executor));
+            }
+            for (int i = 0; i < distinct.size(); i++) {
+                indexes.put(distinct.get(i), loads.get(i).join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        } finally {
+            executor.shutdown();
+        }
+        return new MultiVersionIndex(indexes);
+    }
+
+    /**
+     * @return the versions, in the order they were given
+     */
+    List<String> getVersions() {
+        return Collections.unmodifiableList(new ArrayList<>(indexes.keySet()));
+    }
+
+    /**
+     * @return the index of the given version
+     * @throws IllegalArgumentException
+     *             if the version has not been indexed
+     */
+    ClassIndex get(String version) {
+        ClassIndex index = indexes.get(version);
+        if (index == null) {
+            throw new IllegalArgumentException(
+                    "Version " + version + " has not been indexed");
+        }
+        return index;
+    }
+
+    /**
+     * Creates the engine of each version.
+     *
+     * @return the engines by their version, in the order of the versions
+     */
+    Map<String, MigrationEngine> createEngines() {
+        Map<String, MigrationEngine> engines = new LinkedHashMap<>();
+        indexes.forEach((version, index) -> engines.put(version,
+                new MigrationEngine(version, index)));
+        return engines;
+    }
+
+    /**
+     * @return the compatibility classes of the second version which are not
+     *         in the first one, sorted
+     */
+    SortedSet<String> getAdded(String from, String to) {
+        get(from);
+        get(to);
+        int fromMask = ((1 << ClassIndex.BITS) - 1) << shifts.get(from);
+        int toMask = ((1 << ClassIndex.BITS) - 1) << shifts.get(to);
+        SortedSet<String> added = new TreeSet<>();
+        for (int node = 1; node < names.size(); node++) {
+            int mask = names.getMask(node);
+            if ((mask & toMask) != 0 && (mask & fromMask) == 0) {
+                added.add(names.getName(node));
+            }
+        }
+        return added;
+    }
+
+    /**
+     * @return the compatibility classes of the first version which are not
+     *         in the second one, sorted
+     */
+    SortedSet<String> getRemoved(String from, String to) {
+        return getAdded(to, from);
+    }
+
+    /**
+     * Prints the compatibility classes added and removed in each version
+     * since the previous one.
+     */
+    void printDiff(PrintStream out) {
+        List<String> versions = getVersions();
+        for (int i = 1; i < versions.size(); i++) {
+            String from = versions.get(i - 1);
+            String to = versions.get(i);
+            Set<String> added = getAdded(from, to);
+            Set<String> removed = getRemoved(from, to);
+            out.println("Compatibility classes added in " + to + " since "
+                    + from + ": " + added.size());
+            added.forEach(cls -> out.println("+ " + cls));
+            out.println("Compatibility classes removed in " + to + " since "
+                    + from + ": " + removed.size());
+            removed.forEach(cls -> out.println("- " + cls));
+        }
+    }
+}
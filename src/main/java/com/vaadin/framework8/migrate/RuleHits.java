@@ -0,0 +1,32 @@
+package com.vaadin.framework8.migrate;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how many times each rewrite rule was applied during one run. The
+ * rewriters are shared between runs, so the counts are kept separately. A
+ * counter is only created when its rule is first applied, so the cost is
+ * limited to the actual rewrites.
+ */
+class RuleHits {
+
+    private final ConcurrentMap<String, LongAdder> hits
+            = new ConcurrentHashMap<>();
+
+    void hit(String rule) {
+        hits.computeIfAbsent(rule, r -> new LongAdder()).increment();
+    }
+
+    /**
+     * @return the number of times each rule was applied, sorted by rule
+     */
+    Map<String, Long> get() {
+        Map<String, Long> counts = new TreeMap<>();
+        hits.forEach((rule, count) -> counts.put(rule, count.sum()));
+        return counts;
+    }
+}
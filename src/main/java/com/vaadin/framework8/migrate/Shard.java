@@ -0,0 +1,77 @@
+package com.vaadin.framework8.migrate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * One of several slices of the files of a project, for splitting the
+ * migration of a large project between machines.
+ * <p>
+ * A file belongs to the shard selected by the CRC-32 of its relative path, so
+ * the slice of a shard is the same on every machine and JVM, and the shards
+ * of a run together cover every file exactly once. Shards are numbered from 1
+ * to the number of shards.
+ */
+final class Shard {
+
+    private final int index;
+    private final int count;
+
+    Shard(int index, int count) {
+        if (count < 1 || index < 1 || index > count) {
+            throw new IllegalArgumentException(
+                    "Invalid shard " + index + "/" + count);
+        }
+        this.index = index;
+        this.count = count;
+    }
+
+    /**
+     * Parses a shard given as {@code index/count}, e.g. {@code 2/4}.
+     */
+    static Shard parse(String shard) {
+        int slash = shard.indexOf('/');
+        if (slash < 0) {
+            throw new IllegalArgumentException("Invalid shard " + shard
+                    + ", expected index/count, e.g. 2/4");
+        }
+        return new Shard(Integer.parseInt(shard.substring(0, slash)),
+                Integer.parseInt(shard.substring(slash + 1)));
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    boolean contains(SourceFile file) {
+        return contains(file.getRelativePath());
+    }
+
+    /**
+     * @param relativePath
+     *            the path relative to the project root, using {@code /} as
+     *            the separator
+     */
+    boolean contains(String relativePath) {
+        CRC32 crc = new CRC32();
+        crc.update(relativePath.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue() % count == index - 1;
+    }
+
+    /**
+     * @return the suffix of the journal and manifest files of this shard, so
+     *         that shards can run in the same project folder
+     */
+    String getFileSuffix() {
+        return "-" + index + "of" + count;
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+}
@@ -0,0 +1,58 @@
+package com.vaadin.framework8.migrate;
+
+import java.nio.file.Path;
+import java.util.Objects;
+
+/**
+ * A Java or declarative file found by {@link SourceWalker}, with the
+ * attributes read during the walk.
+ */
+final class SourceFile {
+    private final Path path;
+    private final String relativePath;
+    private final long size;
+    private final long lastModified;
+
+    SourceFile(Path path, String relativePath, long size, long lastModified) {
+        this.path = Objects.requireNonNull(path);
+        this.relativePath = Objects.requireNonNull(relativePath);
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return the path relative to the walked root, using {@code /} as the
+     *         separator on all platforms
+     */
+    String getRelativePath() {
+        return relativePath;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the last modification time in milliseconds
+     */
+    long getLastModified() {
+        return lastModified;
+    }
+
+    boolean isJava() {
+        return relativePath.endsWith(".java");
+    }
+
+    boolean isDeclarative() {
+        return relativePath.endsWith(".html");
+    }
+
+    @Override
+    public String toString() {
+        return relativePath;
+    }
+}
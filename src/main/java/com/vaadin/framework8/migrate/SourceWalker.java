@@ -0,0 +1,248 @@
+package com.vaadin.framework8.migrate;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Finds the Java and declarative files to migrate below a project root.
+ * <p>
+ * Whole subtrees are pruned as soon as their directory is visited:
+ * version control metadata, {@code node_modules}, generated sources, build
+ * output ({@code target} and {@code build} next to a Maven or Gradle build
+ * file), directories matching an exclude glob and directories ignored by a
+ * {@code .gitignore} file. Files are classified using the attributes the walk
+ * already read, without further stat calls.
+ * <p>
+ * Symbolic links are followed, so a file can be reached by several paths; it
+ * is only returned once, by the path which sorts first, so that it is not
+ * rewritten twice concurrently.
+ */
+class SourceWalker {
+
+    private static final Set<String> EXCLUDED_DIRECTORIES = new HashSet<>(
+            Arrays.asList(".git", ".svn", ".hg", "node_modules",
+                    "generated-sources", "generated-test-sources"));
+    private static final Set<String> BUILD_OUTPUT_DIRECTORIES = new HashSet<>(
+            Arrays.asList("target", "build"));
+    private static final List<String> BUILD_FILES = Arrays.asList("pom.xml",
+            "build.gradle", "build.gradle.kts");
+
+    private final Path root;
+    private final List<PathMatcher> includes;
+    private final List<PathMatcher> excludes;
+    private final boolean gitIgnore;
+
+    /**
+     * @param root
+     *            the directory to walk, not null
+     * @param includes
+     *            globs of files to migrate relative to the root; if empty,
+     *            all files are included
+     * @param excludes
+     *            globs of files and directories to skip relative to the root
+     * @param gitIgnore
+     *            whether to skip the files ignored by {@code .gitignore}
+     *            files
+     */
+    SourceWalker(Path root, Collection<String> includes,
+            Collection<String> excludes, boolean gitIgnore) {
+        this.root = Objects.requireNonNull(root);
+        FileSystem fileSystem = root.getFileSystem();
+        this.includes = includes.stream()
+                .map(glob -> fileSystem.getPathMatcher("glob:" + glob))
+                .collect(Collectors.toList());
+        this.excludes = excludes.stream()
+                .map(glob -> fileSystem.getPathMatcher("glob:" + glob))
+                .collect(Collectors.toList());
+        this.gitIgnore = gitIgnore;
+    }
+
+    /**
+     * @return the Java and declarative files, sorted by relative path
+     */
+    List<SourceFile> walk() throws IOException {
+        return walk(root, null);
+    }
+
+    /**
+     * Walks a subtree of the root, skipping the same directories and files
+     * as a walk of the whole root would, e.g. to find the files to migrate
+     * among the paths which have changed.
+     *
+     * @param start
+     *            a directory or file below the root, or the root itself
+     * @param directories
+     *            a list to add the walked directories to, or null
+     * @return the Java and declarative files, sorted by relative path
+     */
+    List<SourceFile> walk(Path start, List<Path> directories)
+            throws IOException {
+        Visitor visitor = new Visitor(directories);
+        // Enter the parent directories first for their .gitignore rules
+        List<Path> parents = new ArrayList<>();
+        for (Path parent = start.getParent(); parent != null
+                && parent.startsWith(root); parent = parent.getParent()) {
+            parents.add(0, parent);
+        }
+        for (Path parent : parents) {
+            if (visitor.enter(parent) == FileVisitResult.SKIP_SUBTREE) {
+                return new ArrayList<>();
+            }
+        }
+        Files.walkFileTree(start, EnumSet.of(FileVisitOption.FOLLOW_LINKS),
+                Integer.MAX_VALUE, visitor);
+        List<SourceFile> files = new ArrayList<>(visitor.files.values());
+        files.sort(Comparator.comparing(SourceFile::getRelativePath));
+        return files;
+    }
+
+    static boolean isJavaFile(Path f) {
+        return f.getFileName().toString().endsWith(".java");
+    }
+
+    static boolean isDeclarativeFile(Path f) {
+        return f.getFileName().toString().endsWith(".html");
+    }
+
+    private class Visitor extends SimpleFileVisitor<Path> {
+        /**
+         * The files found by the identity of the file they resolve to.
+         */
+        private final Map<Object, SourceFile> files = new HashMap<>();
+        private final List<Path> directories;
+        /**
+         * The rules of the enclosing directories; may contain nulls.
+         */
+        private final List<GitIgnore> gitIgnores = new ArrayList<>();
+        private GitIgnore current;
+
+        Visitor(List<Path> directories) {
+            this.directories = directories;
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir,
+                BasicFileAttributes attrs) throws IOException {
+            FileVisitResult result = enter(dir);
+            if (result == FileVisitResult.CONTINUE && directories != null) {
+                directories.add(dir);
+            }
+            return result;
+        }
+
+        FileVisitResult enter(Path dir) throws IOException {
+            Path relative = root.relativize(dir);
+            if (!dir.equals(root) && isExcludedDirectory(dir, relative)) {
+                return FileVisitResult.SKIP_SUBTREE;
+            }
+            gitIgnores.add(current);
+            if (gitIgnore) {
+                current = GitIgnore.load(current, dir, toSlashPath(relative));
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult postVisitDirectory(Path dir, IOException exc)
+                throws IOException {
+            current = gitIgnores.remove(gitIgnores.size() - 1);
+            return super.postVisitDirectory(dir, exc);
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file,
+                BasicFileAttributes attrs) throws IOException {
+            if (attrs.isRegularFile()
+                    && (isJavaFile(file) || isDeclarativeFile(file))) {
+                Path relative = root.relativize(file);
+                if ((includes.isEmpty() || matchesAny(includes, relative))
+                        && !matchesAny(excludes, relative)
+                        && !isIgnored(relative, false)) {
+                    add(new SourceFile(file, toSlashPath(relative),
+                            attrs.size(), attrs.lastModifiedTime().toMillis()),
+                            attrs);
+                }
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        /**
+         * Adds the file unless it was already found by a path which sorts
+         * first, e.g. through a symbolic link.
+         */
+        private void add(SourceFile f, BasicFileAttributes attrs)
+                throws IOException {
+            // The device and inode where available, read by the walk already
+            Object key = attrs.fileKey() != null ? attrs.fileKey()
+                    : f.getPath().toRealPath();
+            files.merge(key, f,
+                    (a, b) -> a.getRelativePath()
+                            .compareTo(b.getRelativePath()) <= 0 ? a : b);
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exc)
+                throws IOException {
+            if (exc instanceof FileSystemLoopException) {
+                // A symbolic link pointing back to one of its parents
+                return FileVisitResult.CONTINUE;
+            }
+            throw exc;
+        }
+
+        private boolean isExcludedDirectory(Path dir, Path relative) {
+            String name = dir.getFileName().toString();
+            if (EXCLUDED_DIRECTORIES.contains(name)) {
+                return true;
+            }
+            // Only treated as build output next to a build file, as "build"
+            // and "target" are also valid package names
+            if (BUILD_OUTPUT_DIRECTORIES.contains(name) && BUILD_FILES
+                    .stream().anyMatch(
+                            f -> Files.isRegularFile(dir.resolveSibling(f)))) {
+                return true;
+            }
+            return matchesAny(excludes, relative) || isIgnored(relative, true);
+        }
+
+        private boolean isIgnored(Path relative, boolean directory) {
+            return current != null
+                    && current.isIgnored(toSlashPath(relative),
+                            directory);
+        }
+    }
+
+    private static boolean matchesAny(List<PathMatcher> matchers, Path path) {
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String toSlashPath(Path relative) {
+        return relative.toString().replace(relative.getFileSystem()
+                .getSeparator(), "/");
+    }
+}
@@ -0,0 +1,169 @@
+package com.vaadin.framework8.migrate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the directories walked by a {@link SourceWalker} for changed Java
+ * and declarative files.
+ * <p>
+ * Changes are collected until no new events have arrived for a short quiet
+ * period, since saving or checking out files produces bursts of events, and
+ * are then returned as one batch. The files written by the migration itself
+ * are recorded with their size and modification time, and skipped as long
+ * as they still have them. Temporary files, the journal and the manifest are
+ * neither Java nor declarative files, so the walker already skips them.
+ */
+class SourceWatcher implements Closeable {
+
+    private static final long QUIET_PERIOD_MILLIS = 200;
+    private static final long MAX_DELAY_MILLIS = 2000;
+
+    private final SourceWalker walker;
+    private final Path root;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    /**
+     * The size and modification time of the files written by the migration.
+     */
+    private final Map<Path, long[]> ownWrites = new HashMap<>();
+
+    /**
+     * @param walker
+     *            the walker of the root, which decides which directories and
+     *            files are watched, not null
+     * @param root
+     *            the root walked by the walker, not null
+     */
+    SourceWatcher(SourceWalker walker, Path root) throws IOException {
+        this.walker = Objects.requireNonNull(walker);
+        this.root = Objects.requireNonNull(root);
+        watchService = root.getFileSystem().newWatchService();
+    }
+
+    /**
+     * Starts watching the root.
+     *
+     * @return all files of the root, like {@link SourceWalker#walk()}
+     */
+    List<SourceFile> start() throws IOException {
+        return walk(root);
+    }
+
+    /**
+     * Records the files written by the migration, so that the events caused
+     * by writing them are ignored.
+     */
+    void recordOwnWrites(Collection<SourceFile> files) throws IOException {
+        for (SourceFile f : files) {
+            BasicFileAttributes attributes = Files.readAttributes(
+                    f.getPath(), BasicFileAttributes.class);
+            ownWrites.put(f.getPath(), new long[] { attributes.size(),
+                    attributes.lastModifiedTime().toMillis() });
+        }
+    }
+
+    /**
+     * Waits for changes and returns the changed files once no more changes
+     * have been made for a short while.
+     *
+     * @return the changed files, sorted by relative path, not empty
+     */
+    List<SourceFile> awaitChanges() throws IOException, InterruptedException {
+        while (true) {
+            Set<Path> changed = new LinkedHashSet<>();
+            WatchKey key = watchService.take();
+            long deadline = System.nanoTime()
+                    + TimeUnit.MILLISECONDS.toNanos(MAX_DELAY_MILLIS);
+            while (key != null) {
+                collect(key, changed);
+                long remaining = TimeUnit.NANOSECONDS
+                        .toMillis(deadline - System.nanoTime());
+                key = remaining <= 0 ? null
+                        : watchService.poll(
+                                Math.min(QUIET_PERIOD_MILLIS, remaining),
+                                TimeUnit.MILLISECONDS);
+            }
+            List<SourceFile> files = getChangedFiles(changed);
+            if (!files.isEmpty()) {
+                return files;
+            }
+        }
+    }
+
+    private void collect(WatchKey key, Set<Path> changed) {
+        Path directory = directories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // Events were lost, so anything may have changed
+                changed.add(root);
+            } else if (directory != null) {
+                changed.add(directory.resolve((Path) event.context()));
+            }
+        }
+        if (!key.reset()) {
+            directories.remove(key);
+        }
+    }
+
+    private List<SourceFile> getChangedFiles(Set<Path> changed)
+            throws IOException {
+        Map<String, SourceFile> files = new TreeMap<>();
+        for (Path path : changed) {
+            for (SourceFile f : walk(path)) {
+                long[] ownWrite = ownWrites.get(f.getPath());
+                if (ownWrite != null && ownWrite[0] == f.getSize()
+                        && ownWrite[1] == f.getLastModified()) {
+                    continue;
+                }
+                ownWrites.remove(f.getPath());
+                files.put(f.getRelativePath(), f);
+            }
+        }
+        return new ArrayList<>(files.values());
+    }
+
+    /**
+     * Walks the path, watching the new directories found.
+     */
+    private List<SourceFile> walk(Path path) throws IOException {
+        List<Path> walked = new ArrayList<>();
+        List<SourceFile> files;
+        try {
+            files = walker.walk(path, walked);
+        } catch (NoSuchFileException e) {
+            // Deleted or renamed since the event
+            return new ArrayList<>();
+        }
+        for (Path directory : walked) {
+            // Registering a watched directory again returns the same key
+            directories.put(directory.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY), directory);
+        }
+        return files;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
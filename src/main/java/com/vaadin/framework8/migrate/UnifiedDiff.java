@@ -0,0 +1,237 @@
+package com.vaadin.framework8.migrate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Computes the difference between two versions of a file as a unified diff
+ * which can be applied with {@code git apply} or {@code patch -p1}.
+ * <p>
+ * The lines are compared with the Myers algorithm after removing the common
+ * prefix and suffix, which are usually most of the file since the migration
+ * only changes a few lines. Line terminators are part of the lines, so
+ * {@code \r\n} files are diffed and patched as they are.
+ */
+class UnifiedDiff {
+
+    private static final int CONTEXT = 3;
+
+    private static final char EQUAL = ' ';
+    private static final char DELETE = '-';
+    private static final char INSERT = '+';
+
+    private UnifiedDiff() {
+    }
+
+    /**
+     * @param path
+     *            the path of the file relative to the project root, with
+     *            {@code /} separators
+     * @return the diff with {@code a/} and {@code b/} path prefixes, or an
+     *         empty string if the versions are equal
+     */
+    static String diff(String path, String original, String modified) {
+        List<String> a = splitLines(original);
+        List<String> b = splitLines(modified);
+        List<Edit> edits = computeEdits(a, b);
+
+        StringBuilder out = new StringBuilder();
+        int i = 0;
+        while (i < edits.size()) {
+            int change = i;
+            while (change < edits.size() && edits.get(change).type == EQUAL) {
+                change++;
+            }
+            if (change == edits.size()) {
+                break;
+            }
+            int start = Math.max(i, change - CONTEXT);
+            int lastChange = change;
+            int end = change;
+            while (end < edits.size()) {
+                if (edits.get(end).type != EQUAL) {
+                    lastChange = end;
+                } else if (end - lastChange > 2 * CONTEXT) {
+                    break;
+                }
+                end++;
+            }
+            end = Math.min(lastChange + CONTEXT + 1, edits.size());
+            if (out.length() == 0) {
+                out.append("diff --git a/").append(path).append(" b/")
+                        .append(path).append('\n');
+                out.append("--- a/").append(path).append('\n');
+                out.append("+++ b/").append(path).append('\n');
+            }
+            appendHunk(out, edits.subList(start, end));
+            i = end;
+        }
+        return out.toString();
+    }
+
+    private static void appendHunk(StringBuilder out, List<Edit> hunk) {
+        int originalLines = 0;
+        int modifiedLines = 0;
+        for (Edit edit : hunk) {
+            if (edit.type != INSERT) {
+                originalLines++;
+            }
+            if (edit.type != DELETE) {
+                modifiedLines++;
+            }
+        }
+        Edit first = hunk.get(0);
+        out.append("@@ -").append(range(first.originalIndex, originalLines))
+                .append(" +").append(range(first.modifiedIndex, modifiedLines))
+                .append(" @@\n");
+        for (Edit edit : hunk) {
+            out.append(edit.type).append(edit.line);
+            if (!edit.line.endsWith("\n")) {
+                out.append("\n\\ No newline at end of file\n");
+            }
+        }
+    }
+
+    private static String range(int index, int lines) {
+        // An empty range refers to the line before it
+        int start = lines == 0 ? index : index + 1;
+        return lines == 1 ? String.valueOf(start) : start + "," + lines;
+    }
+
+    /**
+     * Splits the text after each {@code \n}, keeping the terminators.
+     */
+    static List<String> splitLines(String text) {
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        int newline;
+        while ((newline = text.indexOf('\n', start)) >= 0) {
+            lines.add(text.substring(start, newline + 1));
+            start = newline + 1;
+        }
+        if (start < text.length()) {
+            lines.add(text.substring(start));
+        }
+        return lines;
+    }
+
+    private static List<Edit> computeEdits(List<String> a, List<String> b) {
+        int prefix = 0;
+        while (prefix < a.size() && prefix < b.size()
+                && a.get(prefix).equals(b.get(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < a.size() - prefix && suffix < b.size() - prefix
+                && a.get(a.size() - 1 - suffix)
+                        .equals(b.get(b.size() - 1 - suffix))) {
+            suffix++;
+        }
+
+        List<Edit> edits = new ArrayList<>(
+                Math.max(a.size(), b.size()) + 16);
+        for (int i = 0; i < prefix; i++) {
+            edits.add(new Edit(EQUAL, a.get(i), i, i));
+        }
+        edits.addAll(myers(a.subList(prefix, a.size() - suffix),
+                b.subList(prefix, b.size() - suffix), prefix));
+        for (int i = suffix; i > 0; i--) {
+            edits.add(new Edit(EQUAL, a.get(a.size() - i), a.size() - i,
+                    b.size() - i));
+        }
+        return edits;
+    }
+
+    /**
+     * Finds the shortest edit script with the greedy O(ND) algorithm by
+     * Myers, keeping the furthest reaching paths of each step for
+     * backtracking.
+     */
+    private static List<Edit> myers(List<String> a, List<String> b,
+            int offset) {
+        int n = a.size();
+        int m = b.size();
+        int max = n + m;
+        int[] v = new int[2 * max + 2];
+        List<int[]> trace = new ArrayList<>();
+        int d = 0;
+        search: for (; d <= max; d++) {
+            trace.add(v.clone());
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || k != d && v[max + k - 1] < v[max + k + 1]) {
+                    x = v[max + k + 1];
+                } else {
+                    x = v[max + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m && a.get(x).equals(b.get(y))) {
+                    x++;
+                    y++;
+                }
+                v[max + k] = x;
+                if (x >= n && y >= m) {
+                    break search;
+                }
+            }
+        }
+
+        List<Edit> edits = new ArrayList<>();
+        int x = n;
+        int y = m;
+        for (; d >= 0; d--) {
+            int[] previous = trace.get(d);
+            int k = x - y;
+            int previousK;
+            if (k == -d || k != d
+                    && previous[max + k - 1] < previous[max + k + 1]) {
+                previousK = k + 1;
+            } else {
+                previousK = k - 1;
+            }
+            int previousX = d == 0 ? 0 : previous[max + previousK];
+            int previousY = d == 0 ? 0 : previousX - previousK;
+            while (x > previousX && y > previousY) {
+                x--;
+                y--;
+                edits.add(new Edit(EQUAL, a.get(x), offset + x, offset + y));
+            }
+            if (d > 0) {
+                if (x == previousX) {
+                    y--;
+                    edits.add(new Edit(INSERT, b.get(y), offset + x,
+                            offset + y));
+                } else {
+                    x--;
+                    edits.add(new Edit(DELETE, a.get(x), offset + x,
+                            offset + y));
+                }
+            }
+        }
+        Collections.reverse(edits);
+        return edits;
+    }
+
+    private static final class Edit {
+        private final char type;
+        private final String line;
+        /**
+         * The index of the line in the original file, or of the next
+         * original line for insertions.
+         */
+        private final int originalIndex;
+        /**
+         * The index of the line in the modified file, or of the next
+         * modified line for deletions.
+         */
+        private final int modifiedIndex;
+
+        Edit(char type, String line, int originalIndex, int modifiedIndex) {
+            this.type = type;
+            this.line = line;
+            this.originalIndex = originalIndex;
+            this.modifiedIndex = modifiedIndex;
+        }
+    }
+}
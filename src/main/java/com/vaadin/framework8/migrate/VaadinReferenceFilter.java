@@ -0,0 +1,60 @@
+package com.vaadin.framework8.migrate;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Checks the raw bytes of a source file for {@code com.vaadin} before the
+ * file is decoded. Every class the migration rewrites lives in that package,
+ * so a file which does not contain the bytes can be skipped without charset
+ * decoding or allocating a String.
+ */
+final class VaadinReferenceFilter {
+
+    private static final byte[] PATTERN = "com.vaadin"
+            .getBytes(StandardCharsets.US_ASCII);
+
+    private VaadinReferenceFilter() {
+    }
+
+    /**
+     * Checks whether the filter can be used for files in the given charset,
+     * that is whether the charset encodes {@code com.vaadin} as plain ASCII.
+     */
+    static boolean isApplicable(Charset charset) {
+        return Arrays.equals(PATTERN, "com.vaadin".getBytes(charset));
+    }
+
+    /**
+     * Searches the remaining bytes of the buffer without changing its
+     * position.
+     *
+     * @return true if the buffer contains {@code com.vaadin}
+     */
+    static boolean mayReferenceVaadin(ByteBuffer buffer) {
+        byte[] bytes = buffer.array();
+        int from = buffer.arrayOffset() + buffer.position();
+        int last = buffer.arrayOffset() + buffer.limit() - PATTERN.length;
+        byte first = PATTERN[0];
+        byte end = PATTERN[PATTERN.length - 1];
+        for (int i = from; i <= last; i++) {
+            // Comparing both ends first keeps the inner loop branch-light
+            if (bytes[i] == first && bytes[i + PATTERN.length - 1] == end
+                    && matchesAt(bytes, i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesAt(byte[] bytes, int index) {
+        for (int j = 1; j < PATTERN.length - 1; j++) {
+            if (bytes[index + j] != PATTERN[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
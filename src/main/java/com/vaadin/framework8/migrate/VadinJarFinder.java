@@ -2,30 +2,201 @@ package com.vaadin.framework8.migrate;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Stream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
 import org.eclipse.aether.artifact.Artifact;
 
 public class VadinJarFinder {
 
+    private File localRepository = new File(
+            System.getenv("HOME") + "/.m2/repository");
+    private File jarDirectory;
+    private List<String> repositories = MavenResolver.DEFAULT_REPOSITORIES;
+    private boolean offline;
+    private PrintStream out = System.out;
+
     public static String get(String moduleName, String version)
             throws IOException {
-        String m2 = System.getenv("HOME") + "/.m2";
+        return get(Collections.singletonList(moduleName), version).get(0);
+    }
+
+    /**
+     * Finds the jars of the given modules using the default settings.
+     *
+     * @see #find(List, String)
+     */
+    public static List<String> get(List<String> moduleNames, String version)
+            throws IOException {
+        return new VadinJarFinder().find(moduleNames, version);
+    }
+
+    /**
+     * Sets the local Maven repository to look for the jars in and to
+     * download them to. Defaults to {@code $HOME/.m2/repository}.
+     */
+    public void setLocalRepository(File localRepository) {
+        this.localRepository = Objects.requireNonNull(localRepository);
+    }
+
+    /**
+     * Sets a directory which is searched before the local Maven repository,
+     * either for {@code <module>-<version>.jar} files or for a Maven
+     * repository layout. Not set by default.
+     */
+    public void setJarDirectory(File jarDirectory) {
+        this.jarDirectory = jarDirectory;
+    }
 
-        final String m2repositoryFolder = m2 + "/repository";
+    /**
+     * Sets the URLs of the repositories to download missing jars from,
+     * replacing the default remote repositories. A local directory can be
+     * used as a repository with a {@code file:} URL.
+     */
+    public void setRepositories(List<String> repositories) {
+        this.repositories = new ArrayList<>(repositories);
+    }
+
+    /**
+     * Sets whether only local sources are used: the jar directory, the local
+     * Maven repository and {@code file:} repositories. Remote repositories
+     * are then never contacted, and a jar missing from all local sources
+     * fails immediately. Defaults to false.
+     */
+    public void setOffline(boolean offline) {
+        this.offline = offline;
+    }
+
+    /**
+     * Sets the stream to print the jars found and downloaded to. Defaults to
+     * {@link System#out}.
+     */
+    public void setOutput(PrintStream out) {
+        this.out = Objects.requireNonNull(out);
+    }
 
-        return getFromLocalMaven(m2repositoryFolder, moduleName, version)
-                .orElseGet(() -> download(m2repositoryFolder, moduleName,
-                        version));
+    PrintStream getOutput() {
+        return out;
+    }
+
+    /**
+     * Finds the jars of the given modules, downloading the ones missing from
+     * the local sources concurrently through one shared resolver.
+     *
+     * @return the jar filenames, in the same order as the modules
+     */
+    public List<String> find(List<String> moduleNames, String version)
+            throws IOException {
+        return find(moduleNames, version, out);
+    }
+
+    /**
+     * Finds the jars of the given modules, printing the jars found and
+     * downloaded to the given stream instead of the output of the finder.
+     */
+    List<String> find(List<String> moduleNames, String version,
+            PrintStream out) throws IOException {
+        final String m2repositoryFolder = localRepository.getPath();
+
+        List<String> filenames = new ArrayList<>();
+        List<Integer> missing = new ArrayList<>();
+        for (String moduleName : moduleNames) {
+            Optional<String> local = getFromJarDirectory(moduleName, version,
+                    out);
+            if (!local.isPresent()) {
+                local = getFromLocalMaven(m2repositoryFolder, moduleName,
+                        version, out);
+            }
+            if (!local.isPresent()) {
+                missing.add(filenames.size());
+            }
+            filenames.add(local.orElse(null));
+        }
+        if (missing.isEmpty()) {
+            return filenames;
+        }
+
+        List<String> repositoryUrls = repositories;
+        if (offline) {
+            repositoryUrls = repositories.stream()
+                    .filter(url -> url.startsWith("file:"))
+                    .collect(Collectors.toList());
+            if (repositoryUrls.isEmpty()) {
+                String modules = missing.stream().map(moduleNames::get)
+                        .collect(Collectors.joining(", "));
+                throw new RuntimeException("Unable to find " + modules + " "
+                        + version + " in " + describeLocalSources()
+                        + " and no file: repository was given in offline mode");
+            }
+        }
+
+        MavenResolver resolver = new MavenResolver(m2repositoryFolder,
+                repositoryUrls, offline);
+        ExecutorService executor = Executors
+                .newFixedThreadPool(missing.size());
+        try {
+            List<CompletableFuture<String>> downloads = new ArrayList<>();
+            for (int index : missing) {
+                String moduleName = moduleNames.get(index);
+                downloads.add(CompletableFuture.supplyAsync(
+                        () -> download(resolver, m2repositoryFolder,
+                                moduleName, version, out),
+                        executor));
+            }
+            for (int i = 0; i < missing.size(); i++) {
+                filenames.set(missing.get(i), downloads.get(i).join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        } finally {
+            executor.shutdown();
+        }
+        return filenames;
+    }
+
+    private String describeLocalSources() {
+        String sources = localRepository.getAbsolutePath();
+        if (jarDirectory != null) {
+            sources = jarDirectory.getAbsolutePath() + ", " + sources;
+        }
+        return sources;
+    }
+
+    private Optional<String> getFromJarDirectory(String moduleName,
+            String version, PrintStream out) {
+        if (jarDirectory == null) {
+            return Optional.empty();
+        }
+        File jar = new File(jarDirectory, moduleName + "-" + version + ".jar");
+        if (!jar.exists()) {
+            jar = new File(jarDirectory, getMavenPath(moduleName, version));
+        }
+        if (jar.exists()) {
+            out.println("Using " + moduleName + " " + version + " from "
+                    + jar.getAbsolutePath());
+            return Optional.of(jar.getAbsolutePath());
+        }
+        return Optional.empty();
     }
 
     private static Optional<String> getFromLocalMaven(String m2repositoryFolder,
-            String moduleName, String version) {
+            String moduleName, String version, PrintStream out) {
         File m2File = new File(
                 m2repositoryFolder + "/" + getMavenPath(moduleName, version));
         if (m2File.exists()) {
-            System.out.println("Using " + moduleName + " " + version
+            out.println("Using " + moduleName + " " + version
                     + " from .m2 cache (" + m2File.getAbsolutePath() + ")");
             return Optional.of(m2File.getAbsolutePath());
         } else {
@@ -34,30 +205,29 @@ public class VadinJarFinder {
 
     }
 
-    private static String download(String m2repositoryFolder, String moduleName,
-            String version) {
+    private static String download(MavenResolver resolver,
+            String m2repositoryFolder, String moduleName, String version,
+            PrintStream out) {
         String filenameWithVersion = moduleName + "-" + version + ".jar";
 
         File target = new File(m2repositoryFolder + "/" + filenameWithVersion);
         if (target.exists()) {
-            System.out.println("Using " + target.getAbsolutePath());
+            out.println("Using " + target.getAbsolutePath());
             return target.getAbsolutePath();
         }
 
-        System.out.println("Downloading " + moduleName + " " + version
+        out.println("Downloading " + moduleName + " " + version
                 + " from Maven to " + m2repositoryFolder);
         // The file will automatically go into the correct Maven folder
         // hierarchy
-        MavenResolver resolver = new MavenResolver(m2repositoryFolder);
-        Stream<Artifact> resolved = resolver.resolve("com.vaadin", moduleName,
+        Artifact artifact = resolver.resolve("com.vaadin", moduleName,
                 version);
-        Optional<Artifact> first = resolved.findFirst();
-        if (!first.isPresent() || !first.get().getFile().exists()) {
+        if (artifact.getFile() == null || !artifact.getFile().exists()) {
             throw new RuntimeException("Unable to download " + moduleName + " "
                     + version + " from Maven");
         }
-        String path = first.get().getFile().getAbsolutePath();
-        System.out.println("Using " + path);
+        String path = artifact.getFile().getAbsolutePath();
+        out.println("Using " + path);
         return path;
     }
 
@@ -0,0 +1,341 @@
+package com.vaadin.framework8.migrate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Writes the migrated files so that an interrupted run neither leaves
+ * half-written files behind nor has to start over.
+ * <p>
+ * Each file is first written to a temporary file next to it, or next to the
+ * target of a symbolic link, so that the link is kept and the target is
+ * migrated. The temporary files are committed in batches: each of them is
+ * synced to disk and renamed over its original file, and then the batch is
+ * appended to a journal in the project root, which lists the files completed
+ * so far. The data of every written file is still synced on its own; only
+ * the syncs of the directories and of the journal are done once per batch.
+ * <p>
+ * A successful run deletes the journal; if a journal of a run with the same
+ * rules is found, the run was interrupted, and the files listed in it are
+ * skipped, unless their size or modification time has changed since, e.g.
+ * because they were checked out again. Since migrating a file twice does not
+ * change it again, files migrated after the last journal entry was written
+ * are simply migrated again.
+ */
+class WriteJournal implements Closeable {
+
+    static final String FILE_NAME = ".vaadin-migration-journal";
+    static final String TEMP_SUFFIX = ".vaadin-migration.tmp";
+    private static final String HEADER = "# vaadin-migration-journal 2 ";
+    private static final int BATCH_SIZE = 64;
+
+    private final Path file;
+    /**
+     * The size and modification time of the files completed by the
+     * interrupted run, by relative path.
+     */
+    private final Map<String, String> completed;
+    private final FileChannel channel;
+    private final Object lock = new Object();
+    private List<Pending> pending = new ArrayList<>();
+
+    private WriteJournal(Path file, Map<String, String> completed,
+            FileChannel channel) {
+        this.file = file;
+        this.completed = completed;
+        this.channel = channel;
+    }
+
+    /**
+     * Opens the journal of the project, resuming an interrupted run with the
+     * same rules, or starting a new journal.
+     *
+     * @param projectRoot
+     *            the project root, not null
+     * @param fingerprint
+     *            the fingerprint of the migration rules of this run, see
+     *            {@link MigrationManifest#fingerprint(java.util.Collection)},
+     *            not null
+     */
+    static WriteJournal open(Path projectRoot, String fingerprint)
+            throws IOException {
+        return open(projectRoot, FILE_NAME, fingerprint);
+    }
+
+    /**
+     * Opens the journal with the given file name in the project root, e.g.
+     * the journal of one shard of a run.
+     */
+    static WriteJournal open(Path projectRoot, String fileName,
+            String fingerprint) throws IOException {
+        Objects.requireNonNull(fingerprint);
+        Path file = projectRoot.resolve(fileName);
+        Map<String, String> completed = new HashMap<>();
+        boolean resume = false;
+        try {
+            String contents = new String(Files.readAllBytes(file),
+                    StandardCharsets.UTF_8);
+            String header = HEADER + fingerprint + "\n";
+            resume = contents.startsWith(header);
+            int start = header.length();
+            int end;
+            // The last line is incomplete if the run was killed while
+            // appending it
+            while (resume && (end = contents.indexOf('\n', start)) >= 0) {
+                // The size and modification time, followed by the path
+                int space = contents.indexOf(' ', start);
+                space = space < 0 || space > end ? -1
+                        : contents.indexOf(' ', space + 1);
+                if (space >= 0 && space < end) {
+                    completed.put(contents.substring(space + 1, end),
+                            contents.substring(start, space));
+                }
+                start = end + 1;
+            }
+        } catch (NoSuchFileException e) {
+            // No interrupted run
+        }
+
+        FileChannel channel;
+        if (resume) {
+            channel = FileChannel.open(file, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        } else {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            channel.write(StandardCharsets.UTF_8
+                    .encode(HEADER + fingerprint + "\n"));
+            channel.force(false);
+        }
+        return new WriteJournal(file, completed, channel);
+    }
+
+    /**
+     * @return the number of files completed by the interrupted run this run
+     *         resumes, 0 if this is a new run
+     */
+    int getResumedCount() {
+        return completed.size();
+    }
+
+    /**
+     * Checks whether the file was completed by the interrupted run this run
+     * resumes, and has not been changed since.
+     */
+    boolean isCompleted(SourceFile f) {
+        return stamp(f.getSize(), f.getLastModified())
+                .equals(completed.get(f.getRelativePath()));
+    }
+
+    private static String stamp(long size, long lastModified) {
+        return size + " " + lastModified;
+    }
+
+    /**
+     * Writes the new contents of the file to a temporary file, which replaces
+     * the file when the batch is committed.
+     *
+     * @return the attributes of the written file, which the file will have
+     *         once it is committed
+     */
+    BasicFileAttributes write(SourceFile f, byte[] contents)
+            throws IOException {
+        Files.write(getTempFile(f), contents);
+        return replaceLater(f);
+    }
+
+    /**
+     * @return the temporary file to write the new contents of the file to
+     *         before calling {@link #replaceLater(SourceFile)}
+     */
+    Path getTempFile(SourceFile f) throws IOException {
+        Path target = getTarget(f);
+        return target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+    }
+
+    /**
+     * @return the file to replace, which is the target of the file if it is
+     *         a symbolic link
+     */
+    private static Path getTarget(SourceFile f) throws IOException {
+        return Files.isSymbolicLink(f.getPath()) ? f.getPath().toRealPath()
+                : f.getPath();
+    }
+
+    /**
+     * Schedules the temporary file written for the file to replace it when
+     * the batch is committed.
+     *
+     * @return the attributes of the written file, which the file will have
+     *         once it is committed
+     */
+    BasicFileAttributes replaceLater(SourceFile f) throws IOException {
+        Path target = getTarget(f);
+        Path temp = getTempFile(f);
+        try {
+            Files.setPosixFilePermissions(temp,
+                    Files.getPosixFilePermissions(target));
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX file system
+        }
+        BasicFileAttributes attributes = Files.readAttributes(temp,
+                BasicFileAttributes.class);
+        add(new Pending(f, target, temp, attributes.size(),
+                attributes.lastModifiedTime().toMillis()));
+        return attributes;
+    }
+
+    /**
+     * Records a file which was processed without changing it.
+     */
+    void completed(SourceFile f) throws IOException {
+        add(new Pending(f, null, null, f.getSize(), f.getLastModified()));
+    }
+
+    private void add(Pending file) throws IOException {
+        List<Pending> batch = null;
+        synchronized (lock) {
+            pending.add(file);
+            if (pending.size() >= BATCH_SIZE) {
+                batch = pending;
+                pending = new ArrayList<>();
+            }
+        }
+        if (batch != null) {
+            commit(batch);
+        }
+    }
+
+    /**
+     * Commits all pending files.
+     */
+    void flush() throws IOException {
+        List<Pending> batch;
+        synchronized (lock) {
+            batch = pending;
+            pending = new ArrayList<>();
+        }
+        commit(batch);
+    }
+
+    private void commit(List<Pending> batch) throws IOException {
+        Set<Path> directories = new LinkedHashSet<>();
+        for (Pending p : batch) {
+            if (p.temp != null) {
+                try (FileChannel temp = FileChannel.open(p.temp,
+                        StandardOpenOption.WRITE)) {
+                    temp.force(true);
+                }
+            }
+        }
+        for (Pending p : batch) {
+            if (p.temp != null) {
+                try {
+                    Files.move(p.temp, p.target,
+                            StandardCopyOption.ATOMIC_MOVE,
+                            StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(p.temp, p.target,
+                            StandardCopyOption.REPLACE_EXISTING);
+                }
+                directories.add(p.target.getParent());
+            }
+        }
+        for (Path directory : directories) {
+            syncDirectory(directory);
+        }
+
+        StringBuilder entries = new StringBuilder();
+        for (Pending p : batch) {
+            entries.append(stamp(p.size, p.lastModified)).append(' ')
+                    .append(p.file.getRelativePath()).append('\n');
+        }
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(entries.toString());
+        synchronized (channel) {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Makes the renames in the directory durable. Not supported on all
+     * platforms, e.g. Windows, where the rename is durable once it returns.
+     */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory,
+                StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported
+        }
+    }
+
+    /**
+     * Commits the pending files and deletes the journal, once all files
+     * have been migrated.
+     */
+    void finish() throws IOException {
+        flush();
+        channel.close();
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Commits the pending files and keeps the journal, so that the next run
+     * resumes from here.
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel.isOpen()) {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    private static final class Pending {
+        private final SourceFile file;
+        private final Path target;
+        private final Path temp;
+        private final long size;
+        private final long lastModified;
+
+        /**
+         * @param size
+         *            the size the file has once the batch is committed
+         * @param lastModified
+         *            the modification time the file has once the batch is
+         *            committed
+         */
+        Pending(SourceFile file, Path target, Path temp, long size,
+                long lastModified) {
+            this.file = file;
+            this.target = target;
+            this.temp = temp;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+}
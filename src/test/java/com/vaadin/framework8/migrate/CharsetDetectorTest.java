@@ -0,0 +1,77 @@
+package com.vaadin.framework8.migrate;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CharsetDetectorTest {
+
+    private static Charset detect(byte[] bytes) {
+        return CharsetDetector.detect(ByteBuffer.wrap(bytes), StandardCharsets.ISO_8859_1, true);
+    }
+
+    private static byte[] bytes(int... values) {
+        final byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+
+    @Test
+    public void byteOrderMarks() {
+        assertEquals(StandardCharsets.UTF_8, detect(bytes(0xEF, 0xBB, 0xBF, 'a')));
+        assertEquals(StandardCharsets.UTF_16BE, detect(bytes(0xFE, 0xFF, 0, 'a')));
+        assertEquals(StandardCharsets.UTF_16LE, detect(bytes(0xFF, 0xFE, 'a', 0)));
+        assertEquals(StandardCharsets.UTF_16LE,
+                CharsetDetector.detect(ByteBuffer.wrap(bytes(0xFF, 0xFE, 'a', 0)), StandardCharsets.ISO_8859_1, false));
+    }
+
+    @Test
+    public void validUtf8() {
+        assertEquals(StandardCharsets.UTF_8, detect("".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(StandardCharsets.UTF_8, detect("import com.vaadin.ui.Label; // plain ASCII, longer than a block"
+                .getBytes(StandardCharsets.UTF_8)));
+        assertEquals(StandardCharsets.UTF_8, detect("Geschäftspartner € 😀".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void invalidUtf8FallsBack() {
+        assertEquals(StandardCharsets.ISO_8859_1, detect("Geschäftspartner".getBytes(StandardCharsets.ISO_8859_1)));
+        // overlong, surrogate, above U+10FFFF, truncated
+        assertEquals(StandardCharsets.ISO_8859_1, detect(bytes(0xC0, 0xAF)));
+        assertEquals(StandardCharsets.ISO_8859_1, detect(bytes(0xE0, 0x80, 0xAF)));
+        assertEquals(StandardCharsets.ISO_8859_1, detect(bytes(0xED, 0xA0, 0x80)));
+        assertEquals(StandardCharsets.ISO_8859_1, detect(bytes(0xF4, 0x90, 0x80, 0x80)));
+        assertEquals(StandardCharsets.ISO_8859_1, detect(bytes('a', 0xE2, 0x82)));
+        assertEquals(StandardCharsets.ISO_8859_1,
+                CharsetDetector.detect(ByteBuffer.wrap("plain".getBytes(StandardCharsets.UTF_8)), StandardCharsets.ISO_8859_1, false));
+    }
+
+    @Test
+    public void filesAreReadInChunks() throws Exception {
+        final File file = File.createTempFile("charsetdetector", ".java");
+        try {
+            final byte[] contents = new byte[200 * 1024];
+            Arrays.fill(contents, (byte) 'a');
+            // a multi-byte sequence split between the first two chunks
+            final byte[] euro = "€".getBytes(StandardCharsets.UTF_8);
+            System.arraycopy(euro, 0, contents, 64 * 1024 - 1, euro.length);
+            Files.write(file.toPath(), contents);
+            assertEquals(StandardCharsets.UTF_8, CharsetDetector.detect(file.toPath(), StandardCharsets.ISO_8859_1, true));
+
+            contents[contents.length - 1] = (byte) 0xE4;
+            Files.write(file.toPath(), contents);
+            assertEquals(StandardCharsets.ISO_8859_1, CharsetDetector.detect(file.toPath(), StandardCharsets.ISO_8859_1, true));
+        } finally {
+            Files.delete(file.toPath());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.vaadin.framework8.migrate;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ClassIndexCacheTest {
+    private File dir;
+    private File server;
+    private File shared;
+    private File client;
+
+    @BeforeEach
+    public void createJars() throws Exception {
+        dir = Files.createTempDirectory("classindexcache").toFile();
+        server = TestUtils.createJar(new File(dir, "server.jar"), "com/vaadin/v7/ui/Label.class",
+                "com/vaadin/v7/ui/Label$Mode.class", "com/vaadin/v7/data/Property.class", "com/vaadin/v7/ui/");
+        shared = TestUtils.createJar(new File(dir, "shared.jar"), "com/vaadin/v7/shared/ui/label/ContentMode.class",
+                "com/vaadin/shared/Range.class");
+        client = TestUtils.createJar(new File(dir, "client.jar"), "com/vaadin/v7/client/ComponentConnector.class",
+                "com/vaadin/v7/client/ui/VLabel.class");
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    private ClassIndex get() throws Exception {
+        return new ClassIndexCache(new File(dir, "cache").toPath(), System.out).get("8.5.2", server.getPath(), shared.getPath(), client.getPath());
+    }
+
+    @Test
+    public void cachedIndexEqualsScannedIndex() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            final ClassIndex index = get();
+            assertEquals(new HashSet<>(Arrays.asList("com.vaadin.v7.ui.Label", "com.vaadin.v7.ui.Label.Mode", "com.vaadin.v7.data.Property")),
+                    index.getServerClasses());
+            assertEquals(Collections.singleton("com.vaadin.v7.shared.ui.label.ContentMode"), index.getSharedClasses());
+            assertEquals(Collections.singleton("com.vaadin.v7.client.ui.VLabel"), index.getClientClasses());
+            assertEquals(Collections.singleton("com.vaadin.v7.ui.Label"), index.getUiClasses());
+            assertEquals(Collections.singleton("Label"), index.getPackages().get("com.vaadin.v7.ui"));
+            assertEquals(4, index.getPackages().size());
+        }
+    }
+
+    @Test
+    public void changedJarInvalidatesCache() throws Exception {
+        assertEquals(1, get().getUiClasses().size());
+        TestUtils.createJar(server, "com/vaadin/v7/ui/Label.class", "com/vaadin/v7/ui/TextField.class");
+        assertEquals(new HashSet<>(Arrays.asList("com.vaadin.v7.ui.Label", "com.vaadin.v7.ui.TextField")), get().getUiClasses());
+    }
+}
@@ -0,0 +1,46 @@
+package com.vaadin.framework8.migrate;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class ClassNameTrieTest {
+
+    @Test
+    public void namesShareTheirPrefix() {
+        final ClassNameTrie trie = new ClassNameTrie();
+        final int label = trie.add("com.vaadin.v7.ui.Label", 1);
+        final int mode = trie.add("com.vaadin.v7.ui.Label.Mode", 2);
+        assertEquals(label, trie.add("com.vaadin.v7.ui.Label", 4));
+        // The root, com, vaadin, v7, ui, Label and Mode
+        assertEquals(7, trie.size());
+
+        assertEquals(label, trie.find("com.vaadin.v7.ui.Label"));
+        assertEquals(label, trie.getParent(mode));
+        assertEquals(5, trie.getMask(label));
+        assertEquals(0, trie.getMask(trie.getParent(label)));
+        assertEquals("com.vaadin.v7.ui.Label.Mode", trie.getName(mode));
+        assertEquals("Mode", trie.getSegment(mode));
+        assertEquals("", trie.getName(ClassNameTrie.ROOT));
+
+        assertEquals(ClassNameTrie.NOT_FOUND, trie.find("com.vaadin.v7.ui.Mode"));
+        assertEquals(ClassNameTrie.NOT_FOUND, trie.find("com.vaadin.v7.ui.Label.Mode.X"));
+        assertEquals(ClassNameTrie.NOT_FOUND, trie.find("com.vaadin.v7.ui.Label."));
+        assertEquals(ClassNameTrie.NOT_FOUND, trie.find("Label"));
+    }
+
+    @Test
+    public void manyNamesAreFound() {
+        final ClassNameTrie trie = new ClassNameTrie();
+        for (int i = 0; i < 5000; i++) {
+            trie.add("com.vaadin.v7.p" + i % 50 + ".C" + i, 1);
+        }
+        for (int i = 0; i < 5000; i++) {
+            final int node = trie.find("com.vaadin.v7.p" + i % 50 + ".C" + i);
+            assertNotEquals(ClassNameTrie.NOT_FOUND, node);
+            assertEquals("com.vaadin.v7.p" + i % 50 + ".C" + i, trie.getName(node));
+        }
+        assertEquals(1 + 3 + 50 + 5000, trie.size());
+    }
+}
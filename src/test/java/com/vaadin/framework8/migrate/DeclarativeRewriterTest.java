@@ -0,0 +1,47 @@
+package com.vaadin.framework8.migrate;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class DeclarativeRewriterTest {
+    private final DeclarativeRewriter rewriter = new DeclarativeRewriter(
+            Arrays.asList("com.vaadin.v7.ui.TextField", "com.vaadin.v7.ui.Label"), "8.5.2");
+
+    @Test
+    public void rewritesStartAndEndTags() {
+        assertEquals("<vaadin7-text-field></vaadin7-text-field><vaadin7-label caption=\"x\"></vaadin7-label>"
+                        + "<vaadin-text-area></vaadin-text-area><vaadin-label/><vaadin7-text-field-x>",
+                rewriter.rewrite("<vaadin-text-field></v-text-field><v-label caption=\"x\"></vaadin-label>"
+                        + "<vaadin-text-area></vaadin-text-area><vaadin-label/><vaadin7-text-field-x>"));
+    }
+
+    @Test
+    public void updatesVaadin7VersionMeta() {
+        assertEquals("<head>\n<meta name=\"vaadin-version\" content=\"8.5.2\">\n</head>",
+                rewriter.rewrite("<head>\n<meta name=\"vaadin-version\" content=\"7.7.0\">\n</head>"));
+        assertEquals("<meta name=\"vaadin-version\" content=\"8.1.0\">",
+                rewriter.rewrite("<meta name=\"vaadin-version\" content=\"8.1.0\">"));
+    }
+
+    @Test
+    public void chunksAreRewrittenLikeWholeFiles() throws Exception {
+        final String source = "<!doctype html>\n<head>\n<meta name=\"vaadin-version\" content=\"7.7.0\">\n</head>\n"
+                + "<body>\n<vaadin-text-field></v-text-field>\u00e4\n<v-label caption=\"x\"></vaadin-label>"
+                + "<vaadin-text-area></vaadin-text-area><vaadin-label/>\n</body>";
+        final String expected = rewriter.rewrite(source);
+        for (int bufferSize = 1; bufferSize < 200; bufferSize++) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            rewriter.rewrite(Channels.newChannel(new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8))),
+                    out, ByteBuffer.allocate(bufferSize), StandardCharsets.UTF_8, null);
+            assertEquals(expected, new String(out.toByteArray(), StandardCharsets.UTF_8), "buffer size " + bufferSize);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.vaadin.framework8.migrate;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class JarDirectoryTest {
+    private File dir;
+
+    @BeforeEach
+    public void createDirectory() throws Exception {
+        dir = Files.createTempDirectory("jardirectory").toFile();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void matchingEntriesAreFound() throws Exception {
+        final File jar = TestUtils.createJar(new File(dir, "a.jar"), "com/vaadin/v7/ui/", "com/vaadin/v7/ui/Label.class",
+                "com/vaadin/v7/ui/Label$Mode.class", "com/vaadin/ui/Button.class", "com/vaadin/v7/ui/styles.css");
+        assertEquals(Arrays.asList("com/vaadin/v7/ui/Label.class", "com/vaadin/v7/ui/Label$Mode.class"),
+                JarDirectory.findEntries(jar.toPath(), "com/vaadin/v7", ".class"));
+    }
+
+    @Test
+    public void commentAndContentsAreSkipped() throws Exception {
+        final File jar = new File(dir, "b.jar");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            out.putNextEntry(new ZipEntry("com/vaadin/v7/data/Property.class"));
+            // Contents which look like an end record
+            out.write(new byte[] { 0x50, 0x4b, 0x05, 0x06, 0, 0, 0, 0 });
+            out.closeEntry();
+            out.setComment("PK\u0005\u0006 a comment which is longer than the end record");
+        }
+        assertEquals(Collections.singletonList("com/vaadin/v7/data/Property.class"),
+                JarDirectory.findEntries(jar.toPath(), "com/vaadin/v7", ".class"));
+    }
+
+    @Test
+    public void unreadableDirectoryIsReported() throws Exception {
+        final File file = new File(dir, "c.jar");
+        FileUtils.writeStringToFile(file, "not a jar", "UTF-8");
+        assertNull(JarDirectory.findEntries(file.toPath(), "com/vaadin/v7", ".class"));
+    }
+}
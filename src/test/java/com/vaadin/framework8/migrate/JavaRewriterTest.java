@@ -0,0 +1,271 @@
+package com.vaadin.framework8.migrate;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JavaRewriterTest {
+    private final JavaRewriter rewriter = new JavaRewriter(renames());
+
+    private static Map<String, String> renames() {
+        Map<String, String> renames = new HashMap<>();
+        renames.put("com.vaadin.ui.Label", "com.vaadin.v7.ui.Label");
+        renames.put("com.vaadin.ui.Field", "com.vaadin.v7.ui.Field");
+        renames.put("com.vaadin.data.Validator.InvalidValueException",
+                "com.vaadin.v7.data.Validator.InvalidValueException");
+        return renames;
+    }
+
+    @Test
+    public void rewritesAllKeywordForms() {
+        assertEquals("import com.vaadin.v7.ui.Label;\n"
+                        + "class A extends com.vaadin.v7.ui.Label implements com.vaadin.v7.ui.Field {\n"
+                        + "  void f() throws com.vaadin.v7.data.Validator.InvalidValueException {}\n}",
+                rewriter.rewrite("import com.vaadin.ui.Label;\n"
+                        + "class A extends com.vaadin.ui.Label implements com.vaadin.ui.Field {\n"
+                        + "  void f() throws com.vaadin.data.Validator.InvalidValueException {}\n}"));
+    }
+
+    @Test
+    public void onlyWholeNamesAreRewritten() {
+        String source = "import com.vaadin.ui.LabelX;\n"
+                + "import com.vaadin.ui.Labels.Foo;\n"
+                + "class A extends com.vaadin.uix.Label { Object o = x.com.vaadin.ui.Label; }\n";
+        assertSame(source, rewriter.rewrite(source));
+    }
+
+    @Test
+    public void rewritesReferencesAnywhereInCode() {
+        assertEquals("import static com.vaadin.v7.ui.Label.CONTENT_TEXT;\n"
+                        + "import com.vaadin.v7.ui.Label.ContentMode ;\n"
+                        + "class A<T extends com.vaadin.v7.ui.Field<?>> extends com.vaadin.v7.ui.Label<T>\n"
+                        + "    implements Foo, com.vaadin.v7.ui.Field<T>, Bar {\n"
+                        + "  @com.vaadin.v7.ui.Label.Ann java.util.List<com.vaadin.v7.ui.Label> f() {\n"
+                        + "    Object l = new com.vaadin.v7.ui.Label((com.vaadin.v7.ui.Field)x, com.vaadin.v7.ui.Label.class);\n"
+                        + "    s.map(com.vaadin.v7.ui.Label::new);\n  }\n}",
+                rewriter.rewrite("import static com.vaadin.ui.Label.CONTENT_TEXT;\n"
+                        + "import com.vaadin.ui.Label.ContentMode ;\n"
+                        + "class A<T extends com.vaadin.ui.Field<?>> extends com.vaadin.ui.Label<T>\n"
+                        + "    implements Foo, com.vaadin.ui.Field<T>, Bar {\n"
+                        + "  @com.vaadin.ui.Label.Ann java.util.List<com.vaadin.ui.Label> f() {\n"
+                        + "    Object l = new com.vaadin.ui.Label((com.vaadin.ui.Field)x, com.vaadin.ui.Label.class);\n"
+                        + "    s.map(com.vaadin.ui.Label::new);\n  }\n}"));
+    }
+
+    @Test
+    public void longestRenamedPrefixIsRewritten() {
+        final Map<String, String> renames = renames();
+        renames.put("com.vaadin.data.Validator", "com.vaadin.v7.data.Validator");
+        final RuleHits hits = new RuleHits();
+        assertEquals("import com.vaadin.v7.data.Validator.InvalidValueException;\n"
+                        + "import com.vaadin.v7.data.Validator.EmptyValueException;",
+                new JavaRewriter(renames).rewrite("import com.vaadin.data.Validator.InvalidValueException;\n"
+                        + "import com.vaadin.data.Validator.EmptyValueException;", hits));
+        final Map<String, Long> expected = new TreeMap<>();
+        expected.put("com.vaadin.data.Validator", 1L);
+        expected.put("com.vaadin.data.Validator.InvalidValueException", 1L);
+        assertEquals(expected, hits.get());
+    }
+
+    @Test
+    public void commentsAndLiteralsAreNotRewritten() {
+        final String source = "// import com.vaadin.ui.Label;\n"
+                + "/* extends com.vaadin.ui.Label */\n"
+                + "/** {@link com.vaadin.ui.Label} */\n"
+                + "String s = \"com.vaadin.ui.Label \\\" com.vaadin.ui.Label\";\n"
+                + "char c = '\"'; char d = '\\''; String t = \"\";\n"
+                + "String u = \"\"\"\n  \"com.vaadin.ui.Label\" \\\"\"\" com.vaadin.ui.Label\n\"\"\";\n";
+        assertSame(source, rewriter.rewrite(source));
+        assertEquals("/**/ com.vaadin.v7.ui.Label // com.vaadin.ui.Label\r"
+                        + "\"\" + com.vaadin.v7.ui.Label + 'x' + com.vaadin.v7.ui.Field",
+                rewriter.rewrite("/**/ com.vaadin.ui.Label // com.vaadin.ui.Label\r"
+                        + "\"\" + com.vaadin.ui.Label + 'x' + com.vaadin.ui.Field"));
+    }
+
+    private static JavaRewriter wildcardRewriter() {
+        final Map<String, String> renames = renames();
+        renames.put("com.vaadin.ui.Table", "com.vaadin.v7.ui.Table");
+        renames.put("com.vaadin.data.Property", "com.vaadin.v7.data.Property");
+        renames.put("com.vaadin.data.Table", "com.vaadin.v7.data.Table");
+        final Map<String, List<String>> packages = new HashMap<>();
+        packages.put("com.vaadin.ui", Arrays.asList("Label", "Field", "Table"));
+        packages.put("com.vaadin.data", Arrays.asList("Property", "Table"));
+        return new JavaRewriter(renames, packages);
+    }
+
+    @Test
+    public void wildcardImportsGetExplicitImportsOfUsedClasses() {
+        final RuleHits hits = new RuleHits();
+        assertEquals("package x;\r\nimport com.vaadin.ui.*;\r\nimport com.vaadin.v7.ui.Field;\r\n"
+                        + "import com.vaadin.v7.ui.Label;\r\nimport java.util.*;\r\n"
+                        + "class A extends Label implements Field<String> {\r\n"
+                        + "  // Table\r\n  Button b = new Button(\"Table\"); Label.ContentMode m = x.Table;\r\n}",
+                wildcardRewriter().rewrite("package x;\r\nimport com.vaadin.ui.*;\r\nimport java.util.*;\r\n"
+                        + "class A extends Label implements Field<String> {\r\n"
+                        + "  // Table\r\n  Button b = new Button(\"Table\"); Label.ContentMode m = x.Table;\r\n}", hits));
+        final Map<String, Long> expected = new TreeMap<>();
+        expected.put("com.vaadin.ui.Field", 1L);
+        expected.put("com.vaadin.ui.Label", 1L);
+        assertEquals(expected, hits.get());
+    }
+
+    @Test
+    public void importedAmbiguousAndDeclaredNamesAreNotImported() {
+        final JavaRewriter rewriter = wildcardRewriter();
+        final String source = "import com.vaadin.ui.*;\nimport com.vaadin.data.*;\n"
+                + "import com.vaadin.v7.ui.Label;\nimport other.Property;\n"
+                + "class Field { Label l; Table t; Field f; Property p; }\n";
+        assertSame(source, rewriter.rewrite(source));
+        assertEquals("import com.vaadin.ui.*;\nimport com.vaadin.v7.ui.Label;\nimport com.vaadin.ui.*;\n"
+                        + "import com.vaadin.data.*;\nimport com.vaadin.v7.data.Property;\nclass A { Label l; Property p; }",
+                rewriter.rewrite("import com.vaadin.ui.*;\nimport com.vaadin.ui.*;\n"
+                        + "import com.vaadin.data.*;\nclass A { Label l; Property p; }"));
+        final String migrated = rewriter.rewrite("import com.vaadin.ui.*;\nclass A { Table t; }");
+        assertSame(migrated, rewriter.rewrite(migrated));
+    }
+
+    @Test
+    public void wildcardImportsAreResolvedInBytes() throws Exception {
+        final JavaRewriter rewriter = wildcardRewriter();
+        final StringBuilder source = new StringBuilder("import com.vaadin.ui.*;\nimport com.vaadin.data .* ;\n");
+        for (int i = 0; i < 20; i++) {
+            source.append("class A").append(i).append(" extends com.vaadin.ui.Label { Field f; /* Property */ }\n");
+        }
+        final String expected = rewriter.rewrite(source.toString());
+        assertTrue(expected.startsWith("import com.vaadin.ui.*;\nimport com.vaadin.v7.ui.Field;\n"), expected);
+        for (int bufferSize = 1; bufferSize < 300; bufferSize += 7) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertTrue(rewriter.rewrite(Channels.newChannel(new ByteArrayInputStream(
+                    source.toString().getBytes(StandardCharsets.UTF_8))), out, ByteBuffer.allocate(bufferSize), null));
+            assertEquals(expected, new String(out.toByteArray(), StandardCharsets.UTF_8), "buffer size " + bufferSize);
+        }
+    }
+
+    private static String rewriteWildcards(String source) throws Exception {
+        final JavaRewriter rewriter = wildcardRewriter();
+        final String expected = rewriter.rewrite(source);
+        for (int bufferSize = 1; bufferSize < 200; bufferSize += 13) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            rewriter.rewrite(Channels.newChannel(new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8))),
+                    out, ByteBuffer.allocate(bufferSize), null);
+            assertEquals(expected, new String(out.toByteArray(), StandardCharsets.UTF_8), "buffer size " + bufferSize);
+        }
+        return expected;
+    }
+
+    @Test
+    public void methodsDeclaredNamesAndMemberAccessesAreNotUses() throws Exception {
+        final String source = "import com.vaadin.ui.*;\n"
+                + "class A {\n  int Label = 0;\n  Foo Table, b;\n  List<String> Field;\n  String[] Table(Bar Label) {\n"
+                + "    x.Label(); Table (); y.\n      Field = 1; z . Table = 2;\n    return new String[] { Label(1) };\n  }\n}\n";
+        assertEquals(source, rewriteWildcards(source));
+    }
+
+    @Test
+    public void typesAreUses() throws Exception {
+        assertEquals("import com.vaadin.ui.*;\nimport com.vaadin.v7.ui.Field;\nimport com.vaadin.v7.ui.Label;\n"
+                        + "import com.vaadin.v7.ui.Table;\nclass A {\n  @Nullable Label l = new Table (\"x\");\n"
+                        + "  Object o = (Field) Label.x(); }\n",
+                rewriteWildcards("import com.vaadin.ui.*;\nclass A {\n  @Nullable Label l = new Table (\"x\");\n"
+                        + "  Object o = (Field) Label.x(); }\n"));
+        assertEquals("import com.vaadin.ui.*;\nimport com.vaadin.v7.ui.Field;\nimport com.vaadin.v7.ui.Label;\n"
+                        + "@Field(1) class A { List<Label> l = s.map(x -> Label.of(x)); }",
+                rewriteWildcards("import com.vaadin.ui.*;\n"
+                        + "@Field(1) class A { List<Label> l = s.map(x -> Label.of(x)); }"));
+    }
+
+    @Test
+    public void returnTypesOfGenericMethodsAreUses() throws Exception {
+        final String body = "class A {\n  public <T> Label create() { return null; }\n"
+                + "  static <T extends List<String>> Field<T> field(T t) { return null; }\n  List<String> Table;\n}\n";
+        assertEquals("import com.vaadin.ui.*;\nimport com.vaadin.v7.ui.Field;\nimport com.vaadin.v7.ui.Label;\n" + body,
+                rewriteWildcards("import com.vaadin.ui.*;\n" + body));
+    }
+
+    @Test
+    public void importsAreAddedAtTheEndOfTheLine() throws Exception {
+        assertEquals("import com.vaadin.ui.*; import java.util.*; // c\nimport com.vaadin.v7.ui.Label;\n"
+                        + "class A { Label l; }",
+                rewriteWildcards("import com.vaadin.ui.*; import java.util.*; // c\nclass A { Label l; }"));
+        assertEquals("import com.vaadin.ui.*; /* a\r\n b */ import com.vaadin.data.*;\r\n"
+                        + "import com.vaadin.v7.ui.Label;\r\nimport com.vaadin.v7.data.Property;\r\n"
+                        + "class A { Label l; Property p; }",
+                rewriteWildcards("import com.vaadin.ui.*; /* a\r\n b */ import com.vaadin.data.*;\r\n"
+                        + "class A { Label l; Property p; }"));
+        assertEquals("import com.vaadin.ui.*;\nimport com.vaadin.v7.ui.Label; class A { Label l; }",
+                rewriteWildcards("import com.vaadin.ui.*; class A { Label l; }"));
+    }
+
+    @Test
+    public void blanksAroundTheDotOfWildcardImportsAreAllowed() throws Exception {
+        assertEquals("import com.vaadin.ui . * ;\nimport com.vaadin.v7.ui.Label;\nimport com.vaadin.data. *;\n"
+                        + "import com.vaadin.v7.data.Property;\nclass A { Label l; Property p; }",
+                rewriteWildcards("import com.vaadin.ui . * ;\nimport com.vaadin.data. *;\n"
+                        + "class A { Label l; Property p; }"));
+        final String spaced = "import com . vaadin.ui.*;\nclass A { Label l; }";
+        assertEquals(spaced, rewriteWildcards(spaced));
+    }
+
+    @Test
+    public void overlappingKeywordsAreScanned() {
+        assertEquals("import import com.vaadin.v7.ui.Label;",
+                rewriter.rewrite("import import com.vaadin.ui.Label;"));
+    }
+
+    private String rewriteBytes(String source, int bufferSize) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final boolean rewritten = rewriter.rewrite(
+                Channels.newChannel(new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8))), out,
+                ByteBuffer.allocate(bufferSize), null);
+        final String result = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertEquals(!source.equals(result), rewritten);
+        return result;
+    }
+
+    @Test
+    public void bytesAreRewrittenLikeStringsAtAnyChunkBoundary() throws Exception {
+        final String source = "package x;\nimport com.vaadin.ui.Label;\nimport com.vaadin.ui.LabelX;\n"
+                + "/* \u00e4\u00f6 */ class A extends com.vaadin.ui.Label implements com.vaadin.ui.Field {\n"
+                + "  void f() throws com.vaadin.data.Validator.InvalidValueException {}\n"
+                + "import com.vaadin.ui.Label\u00e4;\nimport import com.vaadin.ui.Field;\n"
+                + "// com.vaadin.ui.Label\n/* com.vaadin.ui.Label */ String s = \"com.vaadin.ui.Label\\\"\" + com.vaadin.ui.Field;\n"
+                + "char c = '\\''; String t = \"\"\"\ncom.vaadin.ui.Label\\\"\"\"\"\"\";com.vaadin.ui.Label.Foo x;";
+        final String expected = rewriter.rewrite(source);
+        for (int bufferSize = 1; bufferSize < 300; bufferSize++) {
+            assertEquals(expected, rewriteBytes(source, bufferSize), "buffer size " + bufferSize);
+        }
+        for (int i = 0; i < source.length(); i++) {
+            final String shifted = source.substring(i);
+            assertEquals(rewriter.rewrite(shifted), rewriteBytes(shifted, 128), "from " + i);
+        }
+    }
+
+    @Test
+    public void unchangedBytesAreReported() throws Exception {
+        assertEquals("import com.vaadin.ui.Button;", rewriteBytes("import com.vaadin.ui.Button;", 64));
+    }
+
+    @Test
+    public void asciiCompatibleCharsets() {
+        assertTrue(JavaRewriter.isAsciiCompatible(StandardCharsets.UTF_8));
+        assertTrue(JavaRewriter.isAsciiCompatible(StandardCharsets.ISO_8859_1));
+        assertTrue(JavaRewriter.isAsciiCompatible(Charset.forName("windows-1252")));
+        assertFalse(JavaRewriter.isAsciiCompatible(StandardCharsets.UTF_16));
+        assertFalse(JavaRewriter.isAsciiCompatible(Charset.forName("Shift_JIS")));
+    }
+}
@@ -0,0 +1,34 @@
+package com.vaadin.framework8.migrate;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class JsonReaderTest {
+
+    @Test
+    public void valuesAreRead() throws Exception {
+        final Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("name", "a\"b\\cä\n");
+        expected.put("count", 42L);
+        expected.put("ratio", -1.5e3);
+        expected.put("list", Arrays.asList(true, false, null));
+        expected.put("empty", Collections.emptyMap());
+        assertEquals(expected, JsonReader.read(
+                "{ \"name\": \"a\\\"b\\\\c\\u00e4\\n\", \"count\": 42, \"ratio\": -1.5e3,\n \"list\": [true, false, null], \"empty\": {} }"));
+    }
+
+    @Test
+    public void invalidJsonIsRejected() {
+        for (String json : Arrays.asList("", "{", "{\"a\" 1}", "[1,]", "\"abc", "{\"a\": 1} x", "tru", "1-2")) {
+            assertThrows(IOException.class, () -> JsonReader.read(json), json);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.vaadin.framework8.migrate;
+
+import org.apache.commons.io.Charsets;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MigrationDaemonTest {
+    private File dir;
+    private MigrationDaemon daemon;
+    private final List<TestProject> projects = new ArrayList<>();
+
+    @BeforeEach
+    public void createDaemon() throws Exception {
+        dir = Files.createTempDirectory("migrationdaemon").toFile();
+        final File repository = new File(dir, "stand-in-repository");
+        TestUtils.createStandInRepository(repository, "8.99.0");
+        final VadinJarFinder jarFinder = new VadinJarFinder();
+        jarFinder.setJarDirectory(repository);
+        jarFinder.setOffline(true);
+        daemon = new MigrationDaemon(jarFinder, null);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        for (TestProject project : projects) {
+            project.close();
+        }
+        FileUtils.deleteDirectory(dir);
+    }
+
+    private TestProject project() throws Exception {
+        final TestProject project = TestProject.empty();
+        projects.add(project);
+        project.withJavaFile("MyLabel.java", "import com.vaadin.ui.Label;\n", Charsets.UTF_8);
+        return project;
+    }
+
+    @Test
+    public void servesRequestsWithOneEngine() throws Exception {
+        final TestProject first = project();
+        final TestProject second = project();
+        final String requests = first.dir.getPath() + "\n-version=8.99.0\n\n"
+                + second.dir.getPath() + "\n-version=8.99.0\n-dry-run\n\n"
+                + new File(dir, "missing").getPath() + "\n";
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        daemon.serve(new BufferedReader(new StringReader(requests)), new PrintStream(out, true, "UTF-8"));
+
+        final String[] lines = new String(out.toByteArray(), Charsets.UTF_8).split("\n");
+        final List<String> statuses = new ArrayList<>();
+        for (String line : lines) {
+            if (line.startsWith("OK ") || line.startsWith("ERROR ")) {
+                statuses.add(line.substring(0, line.indexOf(' ')));
+            }
+        }
+        assertEquals(Arrays.asList("OK", "OK", "ERROR"), statuses);
+        assertTrue(Arrays.asList(lines).contains("+import com.vaadin.v7.ui.Label;"));
+        first.getJavaFile("MyLabel.java").assertContents("import com.vaadin.v7.ui.Label;\n");
+        second.getJavaFile("MyLabel.java").assertContents("import com.vaadin.ui.Label;\n");
+        assertSame(daemon.getEngine("8.99.0"), daemon.getEngine("8.99.0"));
+    }
+
+    @Test
+    public void rejectsEngineOptions() throws Exception {
+        final TestProject project = project();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        daemon.handle(Arrays.asList(project.dir.getPath(), "-version=8.99.0", "-offline", "-jarDir=jars"),
+                new PrintStream(out, true, "UTF-8"));
+        assertEquals("ERROR The options [-offline, -jarDir=jars] are given when starting the daemon\n",
+                new String(out.toByteArray(), Charsets.UTF_8));
+        project.getJavaFile("MyLabel.java").assertContents("import com.vaadin.ui.Label;\n");
+    }
+
+    @Test
+    public void requiresToken() throws Exception {
+        final TestProject project = project();
+        final String token = MigrationDaemon.createToken(new File(dir, "tokens/daemon-0.token").toPath());
+        assertEquals(token, new String(Files.readAllBytes(new File(dir, "tokens/daemon-0.token").toPath()), Charsets.UTF_8));
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            assertEquals("rw-------", PosixFilePermissions.toString(
+                    Files.getPosixFilePermissions(new File(dir, "tokens/daemon-0.token").toPath())));
+        }
+
+        final String request = project.dir.getPath() + "\n-version=8.99.0\n\n";
+        final ByteArrayOutputStream rejected = new ByteArrayOutputStream();
+        daemon.serve(new BufferedReader(new StringReader("wrong\n" + request)), new PrintStream(rejected, true, "UTF-8"), token);
+        assertEquals("ERROR Invalid token\n", new String(rejected.toByteArray(), Charsets.UTF_8));
+        project.getJavaFile("MyLabel.java").assertContents("import com.vaadin.ui.Label;\n");
+
+        final ByteArrayOutputStream accepted = new ByteArrayOutputStream();
+        daemon.serve(new BufferedReader(new StringReader(token + "\n" + request)), new PrintStream(accepted, true, "UTF-8"), token);
+        assertTrue(new String(accepted.toByteArray(), Charsets.UTF_8).contains("\nOK "));
+        project.getJavaFile("MyLabel.java").assertContents("import com.vaadin.v7.ui.Label;\n");
+    }
+
+    @Test
+    public void rejectsOutputFilesOutsideOfProject() throws Exception {
+        final TestProject project = project();
+        for (String option : Arrays.asList("-report=", "-patch=")) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final File outside = new File(dir, "outside.txt");
+            daemon.handle(Arrays.asList(project.dir.getPath(), "-version=8.99.0", option + "../" + outside.getName()),
+                    new PrintStream(out, true, "UTF-8"));
+            assertTrue(new String(out.toByteArray(), Charsets.UTF_8).startsWith("ERROR "));
+            assertTrue(new String(out.toByteArray(), Charsets.UTF_8).contains("is outside of the project folder"));
+        }
+        project.getJavaFile("MyLabel.java").assertContents("import com.vaadin.ui.Label;\n");
+    }
+
+    @Test
+    public void servesConcurrentRequests() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<String>> responses = new ArrayList<>();
+            final TestProject shared = project();
+            for (int i = 0; i < 8; i++) {
+                // Every other request migrates the same project
+                final TestProject project = i % 2 == 0 ? shared : project();
+                responses.add(executor.submit(() -> {
+                    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    daemon.handle(Arrays.asList(project.dir.getPath(), "-version=8.99.0", "-threads=2"),
+                            new PrintStream(out, true, "UTF-8"));
+                    return new String(out.toByteArray(), Charsets.UTF_8);
+                }));
+            }
+            for (Future<String> response : responses) {
+                assertTrue(response.get().contains("\nOK "), response.get());
+            }
+            for (TestProject project : projects) {
+                project.getJavaFile("MyLabel.java").assertContents("import com.vaadin.v7.ui.Label;\n");
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
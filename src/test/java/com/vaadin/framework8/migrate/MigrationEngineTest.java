@@ -0,0 +1,109 @@
+package com.vaadin.framework8.migrate;
+
+import org.apache.commons.io.Charsets;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MigrationEngineTest {
+    private File dir;
+    private MigrationEngine engine;
+
+    @BeforeEach
+    public void createEngine() throws Exception {
+        dir = Files.createTempDirectory("migrationengine").toFile();
+        final File server = TestUtils.createJar(new File(dir, "server.jar"), "com/vaadin/v7/ui/Label.class",
+                "com/vaadin/v7/ui/TextField.class");
+        final File shared = TestUtils.createJar(new File(dir, "shared.jar"),
+                "com/vaadin/v7/shared/ui/label/ContentMode.class");
+        final File client = TestUtils.createJar(new File(dir, "client.jar"), "com/vaadin/v7/client/ui/VLabel.class");
+        engine = MigrationEngine.fromJars("8.5.2", server.getPath(), shared.getPath(), client.getPath(), null);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void migratesJavaAndDeclarativeFiles() {
+        assertEquals("import com.vaadin.v7.ui.Label;\nimport com.vaadin.annotations.PropertyId;\n",
+                engine.migrateJava(new StringBuilder("import com.vaadin.ui.Label;\n"
+                        + "import com.vaadin.data.fieldgroup.PropertyId;\n")));
+        assertEquals("<vaadin7-label></vaadin7-label><vaadin-button>",
+                engine.migrateDeclarative("<v-label></vaadin-label><vaadin-button>"));
+    }
+
+    @Test
+    public void renamesAreResolvedFromTheClassIndex() {
+        final Map<String, String> renames = engine.getRenames();
+        assertEquals("com.vaadin.v7.ui.Label", renames.get("com.vaadin.ui.Label"));
+        assertEquals("com.vaadin.v7.client.ui.VLabel", renames.get("com.vaadin.client.ui.VLabel"));
+        assertEquals("com.vaadin.shared.Range", renames.get("com.vaadin.shared.ui.grid.Range"));
+        assertEquals(null, renames.get("com.vaadin.ui.Button"));
+        assertEquals(null, renames.get("com.vaadin.v7.ui.Label"));
+        final Map<String, String> expected = new TreeMap<>();
+        expected.put("com.vaadin.ui.Label", "com.vaadin.v7.ui.Label");
+        expected.put("com.vaadin.ui.TextField", "com.vaadin.v7.ui.TextField");
+        expected.put("com.vaadin.shared.ui.label.ContentMode", "com.vaadin.v7.shared.ui.label.ContentMode");
+        expected.put("com.vaadin.client.ui.VLabel", "com.vaadin.v7.client.ui.VLabel");
+        expected.putAll(engine.getSpecialRenames());
+        assertEquals(expected, new TreeMap<>(renames));
+        assertEquals(expected.size(), renames.size());
+    }
+
+    @Test
+    public void concurrentCallsGiveTheSameResults() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                final int n = i;
+                results.add(executor.submit(() -> engine.migrateJava("import com.vaadin.ui.Label;\n"
+                        + "class A" + n + " extends com.vaadin.ui.TextField {}\n")
+                        + engine.migrateDeclarative("<vaadin-text-field id=\"" + n + "\"></vaadin-text-field>")));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals("import com.vaadin.v7.ui.Label;\n"
+                                + "class A" + i + " extends com.vaadin.v7.ui.TextField {}\n"
+                                + "<vaadin7-text-field id=\"" + i + "\"></vaadin7-text-field>",
+                        results.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void sharedEngineMigratesSeveralProjects() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            try (TestProject project = TestProject.empty()) {
+                project.withJavaFile("MyLabel.java", "import com.vaadin.ui.Label;\n", Charsets.UTF_8);
+                final MigrationTool migrationTool = project.migrationTool("8.5.2", Charsets.UTF_8);
+                migrationTool.setEngine(engine);
+                migrationTool.migrate();
+                project.getJavaFile("MyLabel.java").assertContents("import com.vaadin.v7.ui.Label;\n");
+            }
+        }
+    }
+
+    @Test
+    public void toolRejectsEngineOfAnotherVersion() {
+        final MigrationTool migrationTool = new MigrationTool("8.1.0", dir, Charsets.UTF_8);
+        assertThrows(IllegalArgumentException.class, () -> migrationTool.setEngine(engine));
+    }
+}
@@ -0,0 +1,33 @@
+package com.vaadin.framework8.migrate;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MigrationOptionsTest {
+
+    @Test
+    public void numericOptionsAreValidated() {
+        final MigrationOptions options = MigrationOptions.parse(Arrays.asList("-threads=4", "-daemon=0"), null);
+        assertEquals(4, options.threads);
+        assertEquals(0, options.daemonPort);
+        for (String invalid : Arrays.asList("-threads=0", "-threads=-1", "-threads=x", "-threads=",
+                "-daemon=-1", "-daemon=65536", "-daemon=port")) {
+            final IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                    () -> MigrationOptions.parse(Collections.singletonList(invalid), null));
+            assertEquals(true, e.getMessage().startsWith("Invalid option " + invalid), e.getMessage());
+        }
+    }
+
+    @Test
+    public void engineOptionsAreListed() {
+        final MigrationOptions options = MigrationOptions.parse(Arrays.asList("-threads=4", "-offline", "-jarDir=jars",
+                "-repo=https://example.com", "-no-cache", "-no-gitignore"), null);
+        assertEquals(Arrays.asList("-offline", "-jarDir=jars", "-repo=https://example.com", "-no-cache"),
+                options.getEngineOptions());
+    }
+}
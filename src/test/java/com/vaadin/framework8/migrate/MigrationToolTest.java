@@ -5,7 +5,23 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
 import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * @author mavi
@@ -89,6 +105,23 @@ public class MigrationToolTest {
                 "public class MyLabel extends Label {}\n// Geschäftspartner");
     }
 
+    @Test
+    public void charsetIsDetectedPerFile() throws Exception {
+        project.withJavaFile("Latin1.java", "import com.vaadin.ui.Label;\n// Geschäftspartner", Charsets.ISO_8859_1);
+        project.withJavaFile("Utf8.java", "import com.vaadin.ui.Label;\n// Geschäftspartner", Charsets.UTF_8);
+        project.withJavaFile("Bom.java", "\ufeffimport com.vaadin.ui.Label;\n// Geschäftspartner", Charsets.UTF_8);
+        project.withJavaFile("Utf16.java", "\ufeffimport com.vaadin.ui.Label;\n// Geschäftspartner", Charsets.UTF_16LE);
+        project.withTemplate("Latin1.html", "<vaadin-label><!-- Geschäftspartner --></vaadin-label>", Charsets.ISO_8859_1);
+        project.migrate("8.5.2", Charsets.ISO_8859_1);
+
+        project.getJavaFile("Latin1.java", Charsets.ISO_8859_1).assertContents("import com.vaadin.v7.ui.Label;\n// Geschäftspartner");
+        project.getJavaFile("Utf8.java", Charsets.UTF_8).assertContents("import com.vaadin.v7.ui.Label;\n// Geschäftspartner");
+        project.getJavaFile("Bom.java", Charsets.UTF_8).assertContents("\ufeffimport com.vaadin.v7.ui.Label;\n// Geschäftspartner");
+        project.getJavaFile("Utf16.java", Charsets.UTF_16LE).assertContents("\ufeffimport com.vaadin.v7.ui.Label;\n// Geschäftspartner");
+        new TestFile(project.getTemplate("Latin1.html").file, Charsets.ISO_8859_1)
+                .assertContents("<vaadin7-label><!-- Geschäftspartner --></vaadin7-label>");
+    }
+
     @Test
     public void saveDeclarativeFilesInUTF8() throws Exception {
         TestUtils.setDefaultCharset(Charsets.ISO_8859_1);
@@ -98,4 +131,297 @@ public class MigrationToolTest {
         template.assertModified();
         template.assertContents("<vaadin7-vertical-layout><!-- Geschäftspartner --></vaadin7-vertical-layout>");
     }
+
+    @Test
+    public void parallelMigration() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            project.withJavaFile("sub" + i + "/MyLabel.java", "package com.vaadin.random.files.sub" + i + ";\n" +
+                    "import com.vaadin.ui.Label;\n" +
+                    "public class MyLabel extends Label {}\n", Charsets.UTF_8);
+        }
+        project.withTemplate("Foo.html", "<vaadin-vertical-layout></vaadin-vertical-layout>");
+        final MigrationTool migrationTool = project.migrationTool("8.5.2", Charsets.UTF_8);
+        migrationTool.setThreads(4);
+        migrationTool.migrate();
+        for (int i = 0; i < 20; i++) {
+            project.getJavaFile("sub" + i + "/MyLabel.java").assertContents("package com.vaadin.random.files.sub" + i + ";\n" +
+                    "import com.vaadin.v7.ui.Label;\n" +
+                    "public class MyLabel extends Label {}\n");
+        }
+        project.getTemplate("Foo.html").assertContents("<vaadin7-vertical-layout></vaadin7-vertical-layout>");
+    }
+
+    @Test
+    public void incrementalMigrationSkipsUnchangedFiles() throws Exception {
+        project.withJavaFile("MyPanel.java", "import com.vaadin.ui.Panel;", Charsets.UTF_8);
+        MigrationTool migrationTool = project.migrationTool("8.5.2", Charsets.UTF_8);
+        migrationTool.setIncremental(true);
+        migrationTool.migrate();
+        project.getFile(MigrationManifest.FILE_NAME).assertModified();
+
+        // same size and modification time as recorded in the manifest
+        final TestJavaFile myPanel = project.getJavaFile("MyPanel.java");
+        final long lastModified = myPanel.file.lastModified();
+        project.withJavaFile("MyPanel.java", "import com.vaadin.ui.Label;", Charsets.UTF_8);
+        assertTrue(myPanel.file.setLastModified(lastModified));
+        migrationTool.migrate();
+        myPanel.assertContents("import com.vaadin.ui.Label;");
+
+        migrationTool.setFullRescan(true);
+        migrationTool.migrate();
+        myPanel.assertContents("import com.vaadin.v7.ui.Label;");
+    }
+
+    @Test
+    public void largeFilesAreStreamed() throws Exception {
+        final StringBuilder filler = new StringBuilder();
+        while (filler.length() < 2 * 1024 * 1024) {
+            filler.append("    // filler line with import com.vaadin.ui.Label; in a comment\n");
+        }
+        project.withJavaFile("Large.java", "import com.vaadin.ui.Label;\n" + filler + "import com.vaadin.ui.Label;",
+                Charsets.UTF_8);
+        project.migrate();
+        project.getJavaFile("Large.java").assertContents(
+                "import com.vaadin.v7.ui.Label;\n" + filler + "import com.vaadin.v7.ui.Label;");
+    }
+
+    @Test
+    public void completedMigrationLeavesNoJournalOrTemporaryFiles() throws Exception {
+        project.withJavaFile("MyLabel.java", "import com.vaadin.ui.Label;", Charsets.UTF_8);
+        project.migrate();
+        project.getJavaFile("MyLabel.java").assertContents("import com.vaadin.v7.ui.Label;");
+        assertFalse(new File(project.dir, WriteJournal.FILE_NAME).exists());
+        assertFalse(new File(project.getJavaFile("MyLabel.java").file.getPath() + WriteJournal.TEMP_SUFFIX).exists());
+    }
+
+    @Test
+    public void dryRunWritesPatchAndLeavesFilesUntouched() throws Exception {
+        project.withJavaFile("MyLabel.java", "package foo;\n\nimport com.vaadin.ui.Label;\n", Charsets.UTF_8);
+        project.withJavaFile("MyButton.java", "import com.vaadin.ui.Button;\n", Charsets.UTF_8);
+        final MigrationTool migrationTool = project.migrationTool("8.5.2", Charsets.UTF_8);
+        migrationTool.setDryRun(true);
+        final File patch = new File(project.dir, "migration.diff");
+        migrationTool.setPatchFile(patch);
+        migrationTool.migrate();
+
+        project.getJavaFile("MyLabel.java").assertContents("package foo;\n\nimport com.vaadin.ui.Label;\n");
+        final String path = "src/main/java/com/vaadin/random/files/MyLabel.java";
+        new TestFile(patch, Charsets.UTF_8).assertContents("diff --git a/" + path + " b/" + path + "\n"
+                + "--- a/" + path + "\n"
+                + "+++ b/" + path + "\n"
+                + "@@ -1,3 +1,3 @@\n"
+                + " package foo;\n"
+                + " \n"
+                + "-import com.vaadin.ui.Label;\n"
+                + "+import com.vaadin.v7.ui.Label;\n");
+    }
+
+    @Test
+    public void dryRunLeavesAsciiIncompatibleFilesOutOfThePatch() throws Exception {
+        project.withJavaFile("MyLabel.java", "import com.vaadin.ui.Label;\n", Charsets.UTF_8);
+        project.withJavaFile("Utf16.java", "\ufeffimport com.vaadin.ui.Label;\n", Charsets.UTF_16LE);
+        final MigrationTool migrationTool = project.migrationTool("8.5.2", Charsets.UTF_8);
+        migrationTool.setDryRun(true);
+        final File patch = new File(project.dir, "migration.diff");
+        migrationTool.setPatchFile(patch);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        migrationTool.setOutput(new PrintStream(output, true, "UTF-8"));
+        migrationTool.migrate();
+
+        project.getJavaFile("Utf16.java", Charsets.UTF_16LE).assertContents("\ufeffimport com.vaadin.ui.Label;\n");
+        final String diff = new TestFile(patch, Charsets.UTF_8).getContents();
+        assertTrue(diff.contains("+import com.vaadin.v7.ui.Label;\n"), diff);
+        assertFalse(diff.contains("Utf16.java"), diff);
+        assertTrue(output.toString("UTF-8").contains("Not including src/main/java/com/vaadin/random/files/Utf16.java"));
+    }
+
+    @Test
+    public void offlineMigrationFromStandInRepository() throws Exception {
+        final File repository = new File(project.dir, "stand-in-repository");
+        TestUtils.createStandInRepository(repository, "8.99.0");
+        project.withJavaFile("MyLabel.java", "import com.vaadin.ui.Label;\nimport com.vaadin.ui.Button;\n", Charsets.UTF_8);
+
+        final VadinJarFinder jarFinder = new VadinJarFinder();
+        jarFinder.setLocalRepository(new File(project.dir, "local-repository"));
+        jarFinder.setRepositories(Collections.singletonList(repository.toURI().toString()));
+        jarFinder.setOffline(true);
+        final MigrationTool migrationTool = project.migrationTool("8.99.0", Charsets.UTF_8);
+        migrationTool.setJarFinder(jarFinder);
+        migrationTool.setCacheDirectory(null);
+        migrationTool.migrate();
+
+        project.getJavaFile("MyLabel.java").assertContents("import com.vaadin.v7.ui.Label;\nimport com.vaadin.ui.Button;\n");
+        project.getFile("local-repository/com/vaadin/vaadin-compatibility-server/8.99.0/vaadin-compatibility-server-8.99.0.jar");
+    }
+
+    @Test
+    public void offlineModeFailsFastWithoutLocalJars() throws Exception {
+        final VadinJarFinder jarFinder = new VadinJarFinder();
+        jarFinder.setLocalRepository(new File(project.dir, "local-repository"));
+        jarFinder.setOffline(true);
+        final MigrationTool migrationTool = project.migrationTool("8.99.0", Charsets.UTF_8);
+        migrationTool.setJarFinder(jarFinder);
+        final RuntimeException e = assertThrows(RuntimeException.class, migrationTool::migrate);
+        assertTrue(e.getMessage().contains("offline"), e.getMessage());
+    }
+
+    @Test
+    public void reportCountsFilesBytesAndRuleHits() throws Exception {
+        final File repository = new File(project.dir, "stand-in-repository");
+        TestUtils.createStandInRepository(repository, "8.99.0");
+        project.withJavaFile("MyLabel.java", "import com.vaadin.ui.Label;\nimport com.vaadin.data.fieldgroup.PropertyId;\n", Charsets.UTF_8);
+        project.withJavaFile("MyButton.java", "import com.vaadin.ui.Button;\n", Charsets.UTF_8);
+        project.withTemplate("MyDesign.html", "<vaadin-label></vaadin-label>");
+
+        final VadinJarFinder jarFinder = new VadinJarFinder();
+        jarFinder.setJarDirectory(repository);
+        jarFinder.setOffline(true);
+        final MigrationTool migrationTool = project.migrationTool("8.99.0", Charsets.UTF_8);
+        migrationTool.setJarFinder(jarFinder);
+        migrationTool.setCacheDirectory(null);
+        final File report = new File(project.dir, "report.json");
+        migrationTool.setReportFile(report);
+        migrationTool.migrate();
+
+        final String json = new TestFile(report, Charsets.UTF_8).getContents();
+        assertTrue(json.contains("\"java\": 2,"), json);
+        assertTrue(json.contains("\"html\": 1,"), json);
+        assertTrue(json.contains("\"modified\": 2,"), json);
+        assertTrue(json.contains("\"untouched\": 1,"), json);
+        assertTrue(json.contains("\"com.vaadin.ui.Label\": 1"), json);
+        assertTrue(json.contains("\"com.vaadin.data.fieldgroup.PropertyId\": 1"), json);
+        assertTrue(json.contains("\"label\": 2"), json);
+        assertTrue(json.contains("\"read\": "), json);
+    }
+
+    @Test
+    public void filesWithoutVaadinReferencesAreSkippedAndCounted() throws Exception {
+        final File repository = new File(project.dir, "stand-in-repository");
+        TestUtils.createStandInRepository(repository, "8.99.0");
+        project.withJavaFile("Plain.java", "import java.util.List;\nclass Plain { List<String> label; }\n", Charsets.UTF_8);
+        project.withJavaFile("Vaadinish.java", "// com.vaadi\nclass Vaadinish {}\n", Charsets.UTF_8);
+        project.withJavaFile("MyLabel.java", "import com.vaadin.ui.Label;\n", Charsets.UTF_8);
+
+        final VadinJarFinder jarFinder = new VadinJarFinder();
+        jarFinder.setJarDirectory(repository);
+        jarFinder.setOffline(true);
+        final MigrationTool migrationTool = project.migrationTool("8.99.0", Charsets.UTF_8);
+        migrationTool.setJarFinder(jarFinder);
+        migrationTool.setCacheDirectory(null);
+        final File report = new File(project.dir, "report.json");
+        migrationTool.setReportFile(report);
+        migrationTool.migrate();
+
+        project.getJavaFile("Plain.java").assertNotModified();
+        project.getJavaFile("Vaadinish.java").assertNotModified();
+        project.getJavaFile("MyLabel.java").assertContents("import com.vaadin.v7.ui.Label;\n");
+        final String json = new TestFile(report, Charsets.UTF_8).getContents();
+        assertTrue(json.contains("\"java\": 3,"), json);
+        assertTrue(json.contains("\"skippedWithoutVaadinReferences\": 2,"), json);
+        assertTrue(json.contains("\"untouched\": 2,"), json);
+    }
+
+    @Test
+    public void shardsMigrateAllFilesOnceAndMergedReportMatchesSingleRun() throws Exception {
+        final File repository = new File(project.dir, "stand-in-repository");
+        TestUtils.createStandInRepository(repository, "8.99.0");
+        try (TestProject sharded = TestProject.empty()) {
+            for (TestProject p : Arrays.asList(project, sharded)) {
+                for (int i = 0; i < 30; i++) {
+                    p.withJavaFile("sub" + i + "/MyLabel.java", "import com.vaadin.ui.Label;\n", Charsets.UTF_8);
+                }
+                p.withJavaFile("MyButton.java", "import com.vaadin.ui.Button;\n", Charsets.UTF_8);
+                p.withTemplate("MyDesign.html", "<vaadin-label></vaadin-label>");
+            }
+
+            final File report = new File(project.dir, "report.json");
+            createShardTool(project, repository, report, 0).migrate();
+            final List<Path> partials = new ArrayList<>();
+            for (int shard = 1; shard <= 3; shard++) {
+                final File partial = new File(sharded.dir, "report-" + shard + ".json");
+                createShardTool(sharded, repository, partial, shard).migrate();
+                partials.add(partial.toPath());
+            }
+            for (int i = 0; i < 30; i++) {
+                sharded.getJavaFile("sub" + i + "/MyLabel.java").assertContents("import com.vaadin.v7.ui.Label;\n");
+            }
+            sharded.getTemplate("MyDesign.html").assertContents("<vaadin7-label></vaadin7-label>");
+
+            final Path merged = sharded.dir.toPath().resolve("merged.json");
+            MigrationReport.merge(partials, merged);
+            final Map<?, ?> single = (Map<?, ?>) JsonReader.read(new TestFile(report, Charsets.UTF_8).getContents());
+            final Map<?, ?> total = (Map<?, ?>) JsonReader.read(new TestFile(merged.toFile(), Charsets.UTF_8).getContents());
+            for (String key : Arrays.asList("version", "files", "bytes", "hits")) {
+                assertEquals(single.get(key), total.get(key), key);
+            }
+            assertEquals(3L, total.get("threads"));
+            assertFalse(total.containsKey("shard"));
+
+            assertThrows(IOException.class, () -> MigrationReport.merge(partials.subList(0, 2), merged));
+            assertThrows(IOException.class, () -> MigrationReport.merge(Arrays.asList(partials.get(0), partials.get(0), partials.get(1)), merged));
+            assertThrows(IOException.class, () -> MigrationReport.merge(Collections.singletonList(report.toPath()), merged));
+        }
+    }
+
+    private static MigrationTool createShardTool(TestProject project, File repository, File report, int shard) {
+        final VadinJarFinder jarFinder = new VadinJarFinder();
+        jarFinder.setJarDirectory(repository);
+        jarFinder.setOffline(true);
+        final MigrationTool migrationTool = project.migrationTool("8.99.0", Charsets.UTF_8);
+        migrationTool.setJarFinder(jarFinder);
+        migrationTool.setCacheDirectory(null);
+        migrationTool.setReportFile(report);
+        if (shard > 0) {
+            migrationTool.setShard(shard, 3);
+        }
+        return migrationTool;
+    }
+
+    @Test
+    public void watchModeMigratesChangedFilesOnce() throws Exception {
+        project.withJavaFile("MyLabel.java", "import com.vaadin.ui.Label;\n", Charsets.UTF_8);
+        final MigrationTool migrationTool = project.migrationTool("8.5.2", Charsets.UTF_8);
+        migrationTool.setWatch(true);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        migrationTool.setOutput(new PrintStream(bytes, true, "UTF-8"));
+        final Supplier<String> output = () -> {
+            synchronized (bytes) {
+                return new String(bytes.toByteArray(), Charsets.UTF_8);
+            }
+        };
+        final Thread watcher = new Thread(() -> {
+            try {
+                migrationTool.migrate();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+        watcher.start();
+        try {
+            awaitOutput(output, "Watching ");
+            project.getJavaFile("MyLabel.java").assertContents("import com.vaadin.v7.ui.Label;\n");
+
+            project.withJavaFile("MyOtherLabel.java", "import com.vaadin.ui.Label;\n", Charsets.UTF_8);
+            project.withJavaFile("MyButton.java", "import com.vaadin.ui.Button;\n", Charsets.UTF_8);
+            awaitOutput(output, "Migrated 1 of 2 changed files");
+            project.getJavaFile("MyOtherLabel.java").assertContents("import com.vaadin.v7.ui.Label;\n");
+
+            // The tool's own write of MyOtherLabel.java is not a change
+            Thread.sleep(1000);
+            assertFalse(output.get().contains("Migrated 0 of"), output.get());
+        } finally {
+            watcher.interrupt();
+            watcher.join(10000);
+        }
+        assertFalse(watcher.isAlive());
+        assertFalse(new File(project.dir, WriteJournal.FILE_NAME).exists());
+    }
+
+    private static void awaitOutput(Supplier<String> output, String expected) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (!output.get().contains(expected)) {
+            assertTrue(System.currentTimeMillis() < deadline, "Expected " + expected + " in " + output.get());
+            Thread.sleep(20);
+        }
+    }
 }
@@ -0,0 +1,53 @@
+package com.vaadin.framework8.migrate;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MultiProjectMigrationTest {
+    private File dir;
+
+    @BeforeEach
+    public void createProjects() throws Exception {
+        dir = Files.createTempDirectory("multiproject").toFile();
+        new File(dir, "a").mkdir();
+        new File(dir, "b").mkdir();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    private Map<File, String> getProjects(String projects) throws Exception {
+        final MigrationOptions options = MigrationOptions.parse(
+                Arrays.asList("-version=8.5.2", "-project=" + projects), null);
+        return new MultiProjectMigration(options, System.out).getProjects();
+    }
+
+    @Test
+    public void projectsAreCanonicalized() throws Exception {
+        final Map<File, String> expected = new LinkedHashMap<>();
+        expected.put(new File(dir, "a").getCanonicalFile(), "8.1.0");
+        expected.put(new File(dir, "b").getCanonicalFile(), "8.5.2");
+        assertEquals(expected, getProjects(dir + "/b/../a@8.1.0," + dir + "/b"));
+    }
+
+    @Test
+    public void duplicateProjectsAreRejected() {
+        for (String projects : Arrays.asList(dir + "/a@8.1.0," + dir + "/a@8.3.0",
+                dir + "/a," + dir + "/./a", dir + "/a/," + dir + "/b/../a@8.5.2")) {
+            assertThrows(IllegalArgumentException.class, () -> getProjects(projects), projects);
+        }
+    }
+}
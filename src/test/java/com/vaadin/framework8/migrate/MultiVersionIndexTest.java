@@ -0,0 +1,65 @@
+package com.vaadin.framework8.migrate;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MultiVersionIndexTest {
+
+    private static MultiVersionIndex createIndex() {
+        final Map<String, ClassIndex> indexes = new LinkedHashMap<>();
+        indexes.put("8.0.0", new ClassIndex(Arrays.asList("com.vaadin.v7.ui.Label", "com.vaadin.v7.ui.Table"),
+                Collections.singletonList("com.vaadin.v7.shared.ui.label.ContentMode"),
+                Collections.singletonList("com.vaadin.v7.client.ui.VLabel")));
+        indexes.put("8.5.2", new ClassIndex(Arrays.asList("com.vaadin.v7.ui.Label", "com.vaadin.v7.ui.TextField"),
+                Collections.singletonList("com.vaadin.v7.shared.ui.label.ContentMode"),
+                Collections.emptyList()));
+        return new MultiVersionIndex(indexes);
+    }
+
+    @Test
+    public void eachVersionKeepsItsOwnClasses() {
+        final MultiVersionIndex index = createIndex();
+        assertEquals(Arrays.asList("8.0.0", "8.5.2"), index.getVersions());
+
+        final ClassIndex v800 = index.get("8.0.0");
+        assertEquals(new HashSet<>(Arrays.asList("com.vaadin.v7.ui.Label", "com.vaadin.v7.ui.Table")), v800.getServerClasses());
+        assertEquals(Collections.singleton("com.vaadin.v7.client.ui.VLabel"), v800.getClientClasses());
+        assertEquals(new HashSet<>(Arrays.asList("Label", "Table")), v800.getPackages().get("com.vaadin.v7.ui"));
+
+        final ClassIndex v852 = index.get("8.5.2");
+        assertEquals(new HashSet<>(Arrays.asList("com.vaadin.v7.ui.Label", "com.vaadin.v7.ui.TextField")), v852.getUiClasses());
+        assertEquals(Collections.singleton("com.vaadin.v7.shared.ui.label.ContentMode"), v852.getSharedClasses());
+        assertEquals(Collections.emptySet(), v852.getClientClasses());
+        assertEquals(false, v852.getServerClasses().contains("com.vaadin.v7.ui.Table"));
+        assertEquals(3, v852.getClasses().size());
+
+        assertEquals("8.5.2", index.createEngines().get("8.5.2").getVersion());
+        assertThrows(IllegalArgumentException.class, () -> index.get("8.1.0"));
+    }
+
+    @Test
+    public void addedAndRemovedClassesAreFound() {
+        final MultiVersionIndex index = createIndex();
+        assertEquals(Collections.singleton("com.vaadin.v7.ui.TextField"), index.getAdded("8.0.0", "8.5.2"));
+        assertEquals(new HashSet<>(Arrays.asList("com.vaadin.v7.ui.Table", "com.vaadin.v7.client.ui.VLabel")),
+                index.getRemoved("8.0.0", "8.5.2"));
+        assertEquals(index.getRemoved("8.0.0", "8.5.2"), index.getAdded("8.5.2", "8.0.0"));
+    }
+
+    @Test
+    public void tooManyVersionsAreRejected() {
+        final Map<String, ClassIndex> indexes = new LinkedHashMap<>();
+        for (int i = 0; i <= MultiVersionIndex.MAX_VERSIONS; i++) {
+            indexes.put("8." + i + ".0", new ClassIndex(Collections.emptyList(), Collections.emptyList(), Collections.emptyList()));
+        }
+        assertThrows(IllegalArgumentException.class, () -> new MultiVersionIndex(indexes));
+    }
+}
@@ -0,0 +1,87 @@
+package com.vaadin.framework8.migrate;
+
+import org.apache.commons.io.Charsets;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Migrates generated projects of realistic sizes. These take a while, so they only run with {@code -Dscale.tests=true}.
+ * The size can be tuned with {@code -Dscale.files=100000 -Dscale.fileSize=20000} (about 2 GB), and the heap budget
+ * with {@code -Dscale.heapBudgetMb=256}.
+ */
+@EnabledIfSystemProperty(named = "scale.tests", matches = "true")
+public class ScaleTest {
+    private static final String VERSION = "8.99.0";
+    private static final int FILES = Integer.getInteger("scale.files", 5000);
+    private static final int FILE_SIZE = Integer.getInteger("scale.fileSize", 4096);
+    private static final int HEAP_BUDGET_MB = Integer.getInteger("scale.heapBudgetMb", 128);
+
+    private static File repository;
+
+    @BeforeAll
+    public static void createStandInRepository() throws Exception {
+        repository = Files.createTempDirectory("standin").toFile();
+        TestUtils.createStandInRepository(repository, VERSION);
+    }
+
+    @AfterAll
+    public static void deleteStandInRepository() throws Exception {
+        FileUtils.deleteDirectory(repository);
+    }
+
+    private static SyntheticProjectGenerator generator(int files) {
+        return new SyntheticProjectGenerator().withJavaFiles(files).withDesignFiles(files / 10)
+                .withFileSize(FILE_SIZE).withDepth(3);
+    }
+
+    private static long migrationMillis(int files) throws Exception {
+        try (TestProject project = TestProject.generated(generator(files))) {
+            final VadinJarFinder jarFinder = new VadinJarFinder();
+            jarFinder.setJarDirectory(repository);
+            jarFinder.setOffline(true);
+            final MigrationTool migrationTool = project.migrationTool(VERSION, Charsets.UTF_8);
+            migrationTool.setJarFinder(jarFinder);
+            migrationTool.setCacheDirectory(null);
+            final long start = System.nanoTime();
+            migrationTool.migrate();
+            return (System.nanoTime() - start) / 1_000_000;
+        }
+    }
+
+    @Test
+    public void runtimeGrowsLinearly() throws Exception {
+        // warm up the JIT and the file system
+        migrationMillis(FILES / 4);
+        final long small = Math.max(migrationMillis(FILES), 50);
+        final long large = migrationMillis(FILES * 4);
+        // four times the input, allowing twice the linear time for noise
+        assertTrue(large < small * 8, "Migrating " + FILES + " files took " + small + "ms, but "
+                + FILES * 4 + " files took " + large + "ms");
+    }
+
+    @Test
+    public void peakHeapStaysWithinBudget() throws Exception {
+        try (TestProject project = TestProject.generated(generator(FILES * 4))) {
+            final String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+            final Process process = new ProcessBuilder(Arrays.asList(java, "-Xmx" + HEAP_BUDGET_MB + "m",
+                    "-cp", System.getProperty("java.class.path"), Migrate.class.getName(),
+                    "-version=" + VERSION, "-offline", "-jarDir=" + repository, "-no-cache", "-threads=4"))
+                    .directory(project.dir).redirectErrorStream(true).start();
+            final String output = IOUtils.toString(process.getInputStream(), Charsets.UTF_8);
+            assertEquals(0, process.waitFor(), "Migration failed with " + HEAP_BUDGET_MB + "MB heap:\n" + output);
+            assertTrue(output.contains("Scanned " + FILES * 4 + " Java files"), output);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.vaadin.framework8.migrate;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ShardTest {
+
+    @Test
+    public void eachPathIsInExactlyOneShard() {
+        final Shard[] shards = { Shard.parse("1/3"), Shard.parse("2/3"), Shard.parse("3/3") };
+        final int[] sizes = new int[shards.length];
+        for (int i = 0; i < 3000; i++) {
+            final String path = "src/main/java/p" + i % 7 + "/C" + i + ".java";
+            int found = 0;
+            for (int s = 0; s < shards.length; s++) {
+                if (shards[s].contains(path)) {
+                    found++;
+                    sizes[s]++;
+                }
+            }
+            assertEquals(1, found, path);
+        }
+        for (int size : sizes) {
+            // Roughly a third each
+            assertEquals(1000, size, 150);
+        }
+        assertEquals("-2of3", shards[1].getFileSuffix());
+    }
+
+    @Test
+    public void invalidShardsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> Shard.parse("0/3"));
+        assertThrows(IllegalArgumentException.class, () -> Shard.parse("4/3"));
+        assertThrows(IllegalArgumentException.class, () -> Shard.parse("3"));
+    }
+}
@@ -0,0 +1,73 @@
+package com.vaadin.framework8.migrate;
+
+import org.apache.commons.io.Charsets;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SourceWalkerTest {
+    private TestProject project;
+
+    @BeforeEach
+    public void setupTestProject() throws Exception {
+        project = TestProject.empty();
+        for (String file : Arrays.asList("pom.xml", "src/A.java", "src/a.html", "src/readme.txt",
+                "src/build/B.java", "target/C.java", "node_modules/x/D.html", ".git/E.java",
+                "src/gen/F.java", "src/gen/keep/G.java", "src/H.java")) {
+            project.withFile(file, "", Charsets.UTF_8);
+        }
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        project.close();
+    }
+
+    private List<String> walk(List<String> includes, List<String> excludes, boolean gitIgnore) throws Exception {
+        return new SourceWalker(project.dir.toPath(), includes, excludes, gitIgnore).walk().stream()
+                .map(SourceFile::getRelativePath)
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void defaultExclusions() throws Exception {
+        assertEquals(Arrays.asList("src/A.java", "src/H.java", "src/a.html", "src/build/B.java",
+                "src/gen/F.java", "src/gen/keep/G.java"),
+                walk(Collections.emptyList(), Collections.emptyList(), true));
+    }
+
+    @Test
+    public void includesAndExcludes() throws Exception {
+        assertEquals(Arrays.asList("src/A.java", "src/H.java"),
+                walk(Collections.singletonList("**.java"), Collections.singletonList("src/*/**"), true));
+    }
+
+    @Test
+    public void gitIgnore() throws Exception {
+        project.withFile(".gitignore", "# generated\n/src/gen/\n!keep\n*.html\n", Charsets.UTF_8);
+        project.withFile("src/.gitignore", "H.java\n", Charsets.UTF_8);
+        assertEquals(Arrays.asList("src/A.java", "src/build/B.java"),
+                walk(Collections.emptyList(), Collections.emptyList(), true));
+        assertEquals(6, walk(Collections.emptyList(), Collections.emptyList(), false).size());
+    }
+
+    @Test
+    public void symbolicLinksAreWalkedOnce() throws Exception {
+        final Path src = new File(project.dir, "src").toPath();
+        Files.createSymbolicLink(src.resolve("Link.java"), src.resolve("A.java"));
+        Files.createSymbolicLink(src.resolve("linked"), src.resolve("gen"));
+        assertEquals(Arrays.asList("src/A.java", "src/H.java", "src/a.html", "src/build/B.java",
+                "src/gen/F.java", "src/gen/keep/G.java"),
+                walk(Collections.emptyList(), Collections.emptyList(), true));
+    }
+}
@@ -0,0 +1,130 @@
+package com.vaadin.framework8.migrate;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Generates large test projects. The Java files import {@code Label} and {@code TextField}, which are moved to the
+ * compatibility packages in the stand-in repository created by {@link TestUtils#createStandInRepository(File, String)},
+ * and {@code Button}, which is not. The design files use the corresponding elements.
+ * <p>
+ * Files are spread over a package tree of the given depth, and padded with field declarations up to the given size,
+ * so that e.g. 100 000 files of 20 kB make a 2 GB project.
+ */
+public class SyntheticProjectGenerator {
+    private static final String[] MOVED_CLASSES = {"com.vaadin.ui.Label", "com.vaadin.ui.TextField"};
+    private static final String[] ELEMENTS = {"vaadin-label", "vaadin-text-field", "vaadin-button"};
+    private static final int FAN_OUT = 10;
+
+    private int javaFiles = 1000;
+    private int vaadinImportsPerFile = 2;
+    private int designFiles = 100;
+    private int depth = 3;
+    private int fileSize = 2048;
+    private long seed = 1;
+
+    public SyntheticProjectGenerator withJavaFiles(int javaFiles) {
+        this.javaFiles = javaFiles;
+        return this;
+    }
+
+    /**
+     * @param vaadinImportsPerFile the number of imports of moved classes in each Java file; files with index divisible
+     *                             by 4 get none, like the many files of a project which do not use Vaadin at all.
+     */
+    public SyntheticProjectGenerator withVaadinImportsPerFile(int vaadinImportsPerFile) {
+        this.vaadinImportsPerFile = vaadinImportsPerFile;
+        return this;
+    }
+
+    public SyntheticProjectGenerator withDesignFiles(int designFiles) {
+        this.designFiles = designFiles;
+        return this;
+    }
+
+    public SyntheticProjectGenerator withDepth(int depth) {
+        this.depth = depth;
+        return this;
+    }
+
+    /**
+     * @param fileSize the approximate size of each generated file in bytes.
+     */
+    public SyntheticProjectGenerator withFileSize(int fileSize) {
+        this.fileSize = fileSize;
+        return this;
+    }
+
+    public SyntheticProjectGenerator withSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public int getJavaFiles() {
+        return javaFiles;
+    }
+
+    /**
+     * Generates the project sources into the given directory.
+     * @param root the project root, not null.
+     * @throws IOException
+     */
+    public void generate(File root) throws IOException {
+        final Random random = new Random(seed);
+        for (int i = 0; i < javaFiles; i++) {
+            final String pkg = packageOf(i);
+            final File file = new File(root, "src/main/java/" + pkg.replace('.', '/') + "/View" + i + ".java");
+            Files.createDirectories(file.getParentFile().toPath());
+            try (BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                int written = writeJava(out, pkg, i, random);
+                for (int field = 0; written < fileSize; field++) {
+                    final String line = "    private String field" + field + " = \"" + random.nextLong() + "\";\n";
+                    out.write(line);
+                    written += line.length();
+                }
+                out.write("}\n");
+            }
+        }
+        for (int i = 0; i < designFiles; i++) {
+            final File file = new File(root, "src/main/resources/" + packageOf(i).replace('.', '/') + "/Design" + i + ".html");
+            Files.createDirectories(file.getParentFile().toPath());
+            try (BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                out.write("<!doctype html>\n<html>\n <head>\n  <meta name=\"vaadin-version\" content=\"7.7.0\">\n </head>\n <body>\n");
+                for (int written = 0; written < fileSize; ) {
+                    final String element = ELEMENTS[random.nextInt(ELEMENTS.length)];
+                    final String line = "  <" + element + " _id=\"e" + written + "\"></" + element + ">\n";
+                    out.write(line);
+                    written += line.length();
+                }
+                out.write(" </body>\n</html>\n");
+            }
+        }
+    }
+
+    private int writeJava(BufferedWriter out, String pkg, int index, Random random) throws IOException {
+        final StringBuilder header = new StringBuilder("package " + pkg + ";\n\n");
+        if (index % 4 != 0) {
+            for (int i = 0; i < vaadinImportsPerFile; i++) {
+                header.append("import ").append(MOVED_CLASSES[random.nextInt(MOVED_CLASSES.length)]).append(";\n");
+            }
+            header.append("import com.vaadin.ui.Button;\n");
+        }
+        header.append("\npublic class View").append(index).append(" {\n");
+        out.write(header.toString());
+        return header.length();
+    }
+
+    private String packageOf(int index) {
+        final StringBuilder pkg = new StringBuilder("com.example.app");
+        int remainder = index;
+        for (int level = 0; level < depth; level++) {
+            pkg.append(".p").append(remainder % FAN_OUT);
+            remainder /= FAN_OUT;
+        }
+        return pkg.toString();
+    }
+}
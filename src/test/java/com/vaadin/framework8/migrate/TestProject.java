@@ -73,6 +73,17 @@ public class TestProject implements Closeable {
         return new TestProject(tempDir);
     }
 
+    /**
+     * Creates a new test project with sources generated by the given generator.
+     * @return the test project, not null.
+     * @throws IOException
+     */
+    public static TestProject generated(SyntheticProjectGenerator generator) throws IOException {
+        final TestProject project = empty();
+        generator.generate(project.dir);
+        return project;
+    }
+
     public TestFile getFile(String name) {
         return getFile(name, Charsets.UTF_8);
     }
@@ -126,7 +137,18 @@ public class TestProject implements Closeable {
      * @throws Exception
      */
     public void migrate(String vaadinVersion, Charset charset) throws Exception {
-        new MigrationTool(vaadinVersion, dir, charset).migrate();
+        migrationTool(vaadinVersion, charset).migrate();
+    }
+
+    /**
+     * Creates a migration tool for this project, which can be further configured before running it.
+     * @return the migration tool, not null.
+     */
+    public MigrationTool migrationTool(String vaadinVersion, Charset charset) {
+        final MigrationTool migrationTool = new MigrationTool(vaadinVersion, dir, charset);
+        // Never write the class index to the developer's cache directory
+        migrationTool.setCacheDirectory(null);
+        return migrationTool;
     }
 
     static final long ONE_DAY = 1L * 24 * 60 * 60 * 1000;
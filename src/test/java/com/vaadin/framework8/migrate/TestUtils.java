@@ -1,7 +1,12 @@
 package com.vaadin.framework8.migrate;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.nio.charset.Charset;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 /**
  * @author mavi
@@ -16,4 +21,43 @@ public class TestUtils {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * Creates a jar file containing the given empty entries, e.g. a stand-in for a compatibility jar.
+     * @param jar the jar file to create, not null.
+     * @param entries the entry names, such as {@code com/vaadin/v7/ui/Label.class}.
+     * @return the jar file.
+     * @throws IOException
+     */
+    public static File createJar(File jar, String... entries) throws IOException {
+        jar.getParentFile().mkdirs();
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            for (String entry : entries) {
+                out.putNextEntry(new ZipEntry(entry));
+                out.closeEntry();
+            }
+        }
+        return jar;
+    }
+
+    /**
+     * Creates a stand-in Maven repository with small compatibility jars, so that the migration can be tested offline.
+     * The server jar contains {@code Label} and {@code TextField}, the shared jar {@code ContentMode} and the client jar
+     * {@code VLabel}.
+     * @param repository the repository root, not null.
+     * @param version the version of the compatibility jars, not null.
+     * @throws IOException
+     */
+    public static void createStandInRepository(File repository, String version) throws IOException {
+        createJar(new File(repository, getMavenPath("vaadin-compatibility-server", version)),
+                "com/vaadin/v7/ui/Label.class", "com/vaadin/v7/ui/TextField.class");
+        createJar(new File(repository, getMavenPath("vaadin-compatibility-shared", version)),
+                "com/vaadin/v7/shared/ui/label/ContentMode.class");
+        createJar(new File(repository, getMavenPath("vaadin-compatibility-client", version)),
+                "com/vaadin/v7/client/ui/VLabel.class");
+    }
+
+    private static String getMavenPath(String moduleName, String version) {
+        return "com/vaadin/" + moduleName + "/" + version + "/" + moduleName + "-" + version + ".jar";
+    }
 }
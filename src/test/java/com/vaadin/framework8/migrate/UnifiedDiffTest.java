@@ -0,0 +1,50 @@
+package com.vaadin.framework8.migrate;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class UnifiedDiffTest {
+
+    @Test
+    public void equalFilesHaveNoDiff() {
+        assertEquals("", UnifiedDiff.diff("A.java", "a\nb\n", "a\nb\n"));
+    }
+
+    @Test
+    public void changedLineWithContext() {
+        assertEquals("diff --git a/src/A.java b/src/A.java\n"
+                        + "--- a/src/A.java\n"
+                        + "+++ b/src/A.java\n"
+                        + "@@ -2,5 +2,5 @@\n"
+                        + " 2\n 3\n 4\n-5\n+five\n 6\n",
+                UnifiedDiff.diff("src/A.java", "1\n2\n3\n4\n5\n6\n", "1\n2\n3\n4\nfive\n6\n"));
+    }
+
+    @Test
+    public void distantChangesAreSeparateHunks() {
+        String original = "a\n1\n2\n3\n4\n5\n6\n7\n8\nb\n";
+        String modified = "A\n1\n2\n3\n4\n5\n6\n7\n8\nB\n";
+        assertEquals("diff --git a/x b/x\n--- a/x\n+++ b/x\n"
+                        + "@@ -1,4 +1,4 @@\n-a\n+A\n 1\n 2\n 3\n"
+                        + "@@ -7,4 +7,4 @@\n 6\n 7\n 8\n-b\n+B\n",
+                UnifiedDiff.diff("x", original, modified));
+    }
+
+    @Test
+    public void insertionsAndDeletions() {
+        assertEquals("diff --git a/x b/x\n--- a/x\n+++ b/x\n"
+                        + "@@ -1,3 +1,3 @@\n-a\n b\n c\n+d\n",
+                UnifiedDiff.diff("x", "a\nb\nc\n", "b\nc\nd\n"));
+        assertEquals("diff --git a/x b/x\n--- a/x\n+++ b/x\n"
+                        + "@@ -0,0 +1 @@\n+a\n",
+                UnifiedDiff.diff("x", "", "a\n"));
+    }
+
+    @Test
+    public void missingNewlineAndCarriageReturnsArePreserved() {
+        assertEquals("diff --git a/x b/x\n--- a/x\n+++ b/x\n"
+                        + "@@ -1,2 +1,2 @@\n a\r\n-b\n\\ No newline at end of file\n+c\n\\ No newline at end of file\n",
+                UnifiedDiff.diff("x", "a\r\nb", "a\r\nc"));
+    }
+}
@@ -0,0 +1,70 @@
+package com.vaadin.framework8.migrate;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VaadinReferenceFilterTest {
+
+    private static ByteBuffer bytes(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void matchesAtStartAndEnd() {
+        assertTrue(VaadinReferenceFilter.mayReferenceVaadin(bytes("com.vaadin.ui.Label;")));
+        assertTrue(VaadinReferenceFilter.mayReferenceVaadin(bytes("import com.vaadin")));
+        assertTrue(VaadinReferenceFilter.mayReferenceVaadin(bytes("com.vaadin")));
+        assertFalse(VaadinReferenceFilter.mayReferenceVaadin(bytes("import com.vaadi")));
+        assertFalse(VaadinReferenceFilter.mayReferenceVaadin(bytes("om.vaadin.ui")));
+        assertFalse(VaadinReferenceFilter.mayReferenceVaadin(bytes("comxvaadin")));
+    }
+
+    @Test
+    public void buffersShorterThanThePatternDoNotMatch() {
+        assertFalse(VaadinReferenceFilter.mayReferenceVaadin(bytes("")));
+        assertFalse(VaadinReferenceFilter.mayReferenceVaadin(bytes("com.vaad")));
+    }
+
+    @Test
+    public void onlyTheRemainingBytesAreSearched() {
+        final ByteBuffer buffer = bytes("com.vaadin; class A {}");
+        buffer.position(1);
+        assertFalse(VaadinReferenceFilter.mayReferenceVaadin(buffer));
+        assertEquals(1, buffer.position());
+
+        buffer.position(0).limit(9);
+        assertFalse(VaadinReferenceFilter.mayReferenceVaadin(buffer));
+        buffer.limit(10);
+        assertTrue(VaadinReferenceFilter.mayReferenceVaadin(buffer));
+    }
+
+    @Test
+    public void arrayOffsetIsRespected() {
+        final ByteBuffer whole = bytes("xcom.vaadinx class A {}");
+        whole.position(2);
+        final ByteBuffer slice = whole.slice();
+        assertEquals(2, slice.arrayOffset());
+        assertFalse(VaadinReferenceFilter.mayReferenceVaadin(slice));
+
+        whole.position(1);
+        final ByteBuffer match = whole.slice();
+        match.limit(10);
+        assertTrue(VaadinReferenceFilter.mayReferenceVaadin(match));
+        match.limit(9);
+        assertFalse(VaadinReferenceFilter.mayReferenceVaadin(match));
+    }
+
+    @Test
+    public void onlyAsciiCompatibleCharsetsAreApplicable() {
+        assertTrue(VaadinReferenceFilter.isApplicable(StandardCharsets.UTF_8));
+        assertTrue(VaadinReferenceFilter.isApplicable(StandardCharsets.ISO_8859_1));
+        assertFalse(VaadinReferenceFilter.isApplicable(StandardCharsets.UTF_16));
+        assertFalse(VaadinReferenceFilter.isApplicable(StandardCharsets.UTF_16LE));
+    }
+}
@@ -0,0 +1,126 @@
+package com.vaadin.framework8.migrate;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WriteJournalTest {
+    private Path dir;
+
+    @BeforeEach
+    public void createDir() throws Exception {
+        dir = Files.createTempDirectory("writejournal");
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir.toFile());
+    }
+
+    private SourceFile file(String name, String contents) throws Exception {
+        final Path path = dir.resolve(name);
+        Files.write(path, contents.getBytes(StandardCharsets.UTF_8));
+        return walked(name);
+    }
+
+    /**
+     * @return the file as found by a walk, with its current size and modification time
+     */
+    private SourceFile walked(String name) throws Exception {
+        final Path path = dir.resolve(name);
+        return new SourceFile(path, name, Files.size(path), Files.getLastModifiedTime(path).toMillis());
+    }
+
+    @Test
+    public void filesAreReplacedWhenCommitted() throws Exception {
+        final SourceFile a = file("A.java", "old");
+        try (WriteJournal journal = WriteJournal.open(dir, "rules")) {
+            journal.write(a, "new".getBytes(StandardCharsets.UTF_8));
+            assertEquals("old", new String(Files.readAllBytes(a.getPath()), StandardCharsets.UTF_8));
+            journal.finish();
+        }
+        assertEquals("new", new String(Files.readAllBytes(a.getPath()), StandardCharsets.UTF_8));
+        assertFalse(Files.exists(dir.resolve("A.java" + WriteJournal.TEMP_SUFFIX)));
+        assertFalse(Files.exists(dir.resolve(WriteJournal.FILE_NAME)));
+    }
+
+    @Test
+    public void interruptedRunIsResumed() throws Exception {
+        final SourceFile a = file("A.java", "old");
+        final SourceFile b = file("B.java", "unchanged");
+        final SourceFile c = file("C.java", "old");
+        try (WriteJournal journal = WriteJournal.open(dir, "rules")) {
+            journal.write(a, "new".getBytes(StandardCharsets.UTF_8));
+            journal.completed(b);
+        }
+        // killed while appending the next entry
+        Files.write(dir.resolve(WriteJournal.FILE_NAME), "C.ja".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        try (WriteJournal journal = WriteJournal.open(dir, "rules")) {
+            assertEquals(2, journal.getResumedCount());
+            assertTrue(journal.isCompleted(walked("A.java")));
+            assertTrue(journal.isCompleted(walked("B.java")));
+            assertFalse(journal.isCompleted(walked("C.java")));
+        }
+        try (WriteJournal journal = WriteJournal.open(dir, "other rules")) {
+            assertEquals(0, journal.getResumedCount());
+            assertFalse(journal.isCompleted(walked("A.java")));
+        }
+    }
+
+    @Test
+    public void filesChangedAfterTheInterruptionAreNotSkipped() throws Exception {
+        final SourceFile a = file("A.java", "old");
+        final SourceFile b = file("B.java", "unchanged");
+        try (WriteJournal journal = WriteJournal.open(dir, "rules")) {
+            journal.write(a, "new".getBytes(StandardCharsets.UTF_8));
+            journal.completed(b);
+        }
+        // e.g. git checkout . before resuming
+        Files.write(a.getPath(), "old".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(a.getPath(), FileTime.fromMillis(Files.getLastModifiedTime(a.getPath()).toMillis() + 2000));
+        Files.write(b.getPath(), "changed".getBytes(StandardCharsets.UTF_8));
+
+        try (WriteJournal journal = WriteJournal.open(dir, "rules")) {
+            assertFalse(journal.isCompleted(walked("A.java")));
+            assertFalse(journal.isCompleted(walked("B.java")));
+        }
+    }
+
+    @Test
+    public void symbolicLinksAreWrittenThrough() throws Exception {
+        final Path shared = Files.createDirectory(dir.resolve("shared"));
+        final Path target = Files.write(shared.resolve("A.java"), "old".getBytes(StandardCharsets.UTF_8));
+        final Path src = Files.createDirectory(dir.resolve("src"));
+        final Path link = src.resolve("A.java");
+        try {
+            Files.createSymbolicLink(link, target);
+        } catch (UnsupportedOperationException | IOException e) {
+            Assumptions.assumeTrue(false, "Symbolic links are not supported: " + e);
+        }
+        final SourceFile a = walked("src/A.java");
+        try (WriteJournal journal = WriteJournal.open(dir, "rules")) {
+            journal.write(a, "new".getBytes(StandardCharsets.UTF_8));
+            journal.finish();
+        }
+        assertTrue(Files.isSymbolicLink(link));
+        assertEquals("new", new String(Files.readAllBytes(target), StandardCharsets.UTF_8));
+        assertFalse(Files.exists(src.resolve("A.java" + WriteJournal.TEMP_SUFFIX)));
+        assertFalse(Files.exists(shared.resolve("A.java" + WriteJournal.TEMP_SUFFIX)));
+    }
+}